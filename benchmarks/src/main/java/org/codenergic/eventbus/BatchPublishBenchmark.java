@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+/**
+ * Publishes bursts of small events to an in-process Vert.x bridge one frame per event and in batches of
+ * {@link BatchPublisher}, which the bridge splits again. A burst is done once the server received every event. The
+ * {@code wireBytes} counter gives the frame bytes sent per second, so dividing it by the score gives bytes per event.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchPublishBenchmark {
+	private static final int BURST = 1000;
+	private static final String BODY = "{\"id\":42,\"status\":\"SHIPPED\"}";
+
+	private final AtomicReference<CountDownLatch> received = new AtomicReference<>(new CountDownLatch(0));
+	private final AtomicLong bytesSent = new AtomicLong();
+	private BridgeServer server;
+	private EventBus eventBus;
+	private BatchPublisher batchPublisher;
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Wire {
+		public long wireBytes;
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		server = new BridgeServer();
+		WebSocket webSocket = new WebSocketFactory().createSocket(server.start());
+		webSocket.addListener(new WebSocketAdapter() {
+			@Override
+			public void onFrameSent(WebSocket ws, WebSocketFrame frame) {
+				bytesSent.addAndGet(frame.getPayloadLength());
+			}
+		});
+		server.vertx().eventBus().consumer("benchmark-sink", event -> received.get().countDown());
+		eventBus = EventBus.newInstance(webSocket, new ObjectMapper(), new EventBusOptions()).openSync();
+		// the bridge answers nothing to a publish, so with Nagle the next batch would wait for a delayed ACK
+		webSocket.getSocket().setTcpNoDelay(true);
+		batchPublisher = new BatchPublisher(eventBus, 100, 10, TimeUnit.MILLISECONDS);
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		batchPublisher.close();
+		eventBus.close();
+		server.stop();
+	}
+
+	@Setup(Level.Iteration)
+	public void resetBytes() {
+		bytesSent.set(0);
+	}
+
+	private void await(CountDownLatch latch, Wire wire) throws InterruptedException {
+		if (!latch.await(10, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("Published events were not received");
+		}
+		wire.wireBytes += bytesSent.getAndSet(0);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public void single(Wire wire) throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(BURST);
+		received.set(latch);
+		for (int i = 0; i < BURST; i++) {
+			eventBus.publish("benchmark-sink", BODY);
+		}
+		await(latch, wire);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public void batched(Wire wire) throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(BURST);
+		received.set(latch);
+		for (int i = 0; i < BURST; i++) {
+			batchPublisher.publish("benchmark-sink", BODY);
+		}
+		await(latch, wire);
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+
+/**
+ * In-process Vert.x SockJS event bus bridge, set up like the one used by the tests. Messages sent to
+ * {@code benchmark} are replied to and published back to {@code benchmark-echo}. Batches of {@link BatchPublisher}
+ * are split into single messages by {@link BatchBridgeHandler}.
+ */
+final class BridgeServer {
+	static final String HOST = "127.0.0.1";
+	static final int PORT = 8081;
+
+	private final Vertx vertx = Vertx.vertx();
+
+	String start() throws Exception {
+		io.vertx.core.eventbus.EventBus eb = vertx.eventBus();
+		eb.consumer("benchmark", event -> event.reply(event.body()));
+		eb.consumer("benchmark-publish", event -> eb.publish("benchmark-echo", event.body()));
+
+		BridgeOptions options = new BridgeOptions()
+				.addInboundPermitted(new PermittedOptions().setAddressRegex("benchmark.*"))
+				.addOutboundPermitted(new PermittedOptions().setAddressRegex("benchmark.*"));
+		Router router = Router.router(vertx);
+		router.route("/eventbus/*").handler(SockJSHandler.create(vertx)
+				.bridge(options, new BatchBridgeHandler(eb, options)));
+		CompletableFuture<Void> listening = new CompletableFuture<>();
+		vertx.createHttpServer().requestHandler(router).listen(PORT, HOST, event -> {
+			if (event.failed()) {
+				listening.completeExceptionally(event.cause());
+			} else {
+				listening.complete(null);
+			}
+		});
+		listening.get(5, TimeUnit.SECONDS);
+		return "ws://" + HOST + ":" + PORT + "/eventbus/websocket";
+	}
+
+	Vertx vertx() {
+		return vertx;
+	}
+
+	void stop() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		vertx.close(event -> latch.countDown());
+		latch.await(5, TimeUnit.SECONDS);
+	}
+}
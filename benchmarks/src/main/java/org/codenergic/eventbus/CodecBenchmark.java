@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * Compares the built-in {@link MessageCodec}s on a small string body without headers and on an order with headers
+ * and a reply address, the latter also with its headers as one reused {@link Headers} instance. Decoding reads every
+ * field. The frame size of each combination is printed during setup; run with {@code -prof gc} to see the allocation
+ * rate per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+	@Param({"json", "cbor", "compact"})
+	private String codec;
+	@Param({"text", "order", "reused"})
+	private String shape;
+	private MessageCodec messageCodec;
+	private Map<String, Object> headers;
+	private Object body;
+	private String replyAddress;
+	private byte[] frame;
+
+	@Setup
+	public void setup() throws IOException {
+		switch (codec) {
+			case "json":
+				messageCodec = new JacksonMessageCodec(new ObjectMapper());
+				break;
+			case "cbor":
+				messageCodec = new JacksonMessageCodec(new ObjectMapper(new CBORFactory()));
+				break;
+			default:
+				messageCodec = new CompactMessageCodec(new ObjectMapper());
+		}
+		if ("text".equals(shape)) {
+			body = "{\"id\":42,\"status\":\"SHIPPED\"}";
+		} else {
+			headers = new LinkedHashMap<>();
+			headers.put("traceId", "4bf92f3577b34da6a3ce929d0e0e4736");
+			headers.put("tenant", "acme");
+			headers.put("attempt", 1);
+			Map<String, Object> order = new LinkedHashMap<>();
+			order.put("id", 42);
+			order.put("customer", "customer-42");
+			order.put("status", "SHIPPED");
+			order.put("total", 129.95);
+			order.put("items", Arrays.asList("sku-1001", "sku-1002", "sku-1003"));
+			body = order;
+			replyAddress = "a1b2c3d4-e5f6-4789-abcd-ef0123456789";
+			if ("reused".equals(shape)) {
+				headers = Headers.copyOf(headers);
+			}
+		}
+		frame = encode();
+		System.out.println(codec + " " + shape + " frame: " + frame.length + " bytes");
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return messageCodec.encode(Message.MessageType.SEND, "orders.updated", headers, body, replyAddress);
+	}
+
+	@Benchmark
+	public void decode(Blackhole blackhole) throws IOException {
+		Message message = messageCodec.decode(frame);
+		blackhole.consume(message.getAddress());
+		blackhole.consume(message.getHeaders());
+		blackhole.consume(message.getBody());
+		blackhole.consume(message.getReplyAddress());
+	}
+}
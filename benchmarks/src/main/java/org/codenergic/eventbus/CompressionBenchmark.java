@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the two ways an outbound frame leaves a connection with permessage-deflate: below the compression
+ * threshold in uncompressed blocks, from it deflated the way the socket writer does. The {@code payloadBytes} and
+ * {@code wireBytes} counters give the bytes per millisecond before and after, so their ratio is the saving on the
+ * wire and the score the CPU it costs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+	@Param({"256", "51200", "512000"})
+	private int bodySize;
+	private byte[] frame;
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Bytes {
+		public long payloadBytes;
+		public long wireBytes;
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		StringBuilder body = new StringBuilder("[");
+		for (int i = 0; body.length() < bodySize; i++) {
+			body.append("{\"id\":").append(i).append(",\"customer\":\"customer-").append(i % 97)
+					.append("\",\"status\":\"").append(i % 3 == 0 ? "SHIPPED" : "PENDING")
+					.append("\",\"total\":").append(i * 7 % 1000).append(".95},");
+		}
+		body.setCharAt(body.length() - 1, ']');
+		frame = new MessageEncoder(new ObjectMapper())
+				.encode(Message.MessageType.PUBLISH, "orders.updated", null, body.toString(), null);
+	}
+
+	@Benchmark
+	public byte[] deflated(Bytes bytes) throws IOException {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (DeflaterOutputStream stream = new DeflaterOutputStream(out, deflater)) {
+			stream.write(frame, 0, frame.length);
+		}
+		deflater.end();
+		byte[] wire = out.toByteArray();
+		bytes.payloadBytes += frame.length;
+		bytes.wireBytes += wire.length;
+		return wire;
+	}
+
+	@Benchmark
+	public byte[] stored(Bytes bytes) {
+		byte[] wire = DeflateBlocks.stored(frame);
+		bytes.payloadBytes += frame.length;
+		bytes.wireBytes += wire.length;
+		return wire;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Feeds an inbound frame to {@link EventBusAdapter#onMessage(byte[])}, decoding it and fanning it out to
+ * {@code handlers} handlers registered for its address on the socket reading thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+	@Param({"1", "10", "1000"})
+	private int handlers;
+
+	private BridgeServer server;
+	private EventBusAdapter eventBus;
+	private byte[] frame;
+
+	@Setup
+	public void setup(Blackhole blackhole) throws Exception {
+		server = new BridgeServer();
+		eventBus = (EventBusAdapter) EventBus.newInstance(server.start()).openSync();
+		for (int i = 0; i < handlers; i++) {
+			eventBus.registerHandler("benchmark-echo", blackhole::consume);
+		}
+		frame = ("{\"type\":\"rec\",\"address\":\"benchmark-echo\",\"headers\":{\"token\":\"123\"}," +
+				"\"body\":\"{\\\"id\\\":42,\\\"status\\\":\\\"SHIPPED\\\"}\"}").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		eventBus.close();
+		server.stop();
+	}
+
+	@Benchmark
+	public void onMessage() throws IOException {
+		eventBus.onMessage(frame);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the former tree based decoding of inbound frames with {@link MessageDecoder}, which reads only the
+ * address until other fields are asked for.
+ * Run with {@code -prof gc} to see the allocation rate per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageDecodeBenchmark {
+	private ObjectMapper objectMapper;
+	private MessageDecoder messageDecoder;
+	private byte[] frame;
+
+	@Setup
+	public void setup() {
+		objectMapper = new ObjectMapper();
+		messageDecoder = new MessageDecoder(objectMapper);
+		frame = ("{\"type\":\"rec\",\"address\":\"orders.updated\",\"headers\":{\"token\":\"123\",\"tenant\":\"acme\"}," +
+				"\"body\":\"{\\\"id\\\":42,\\\"status\\\":\\\"SHIPPED\\\"}\"}").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public Message streaming() throws IOException {
+		return messageDecoder.decode(frame);
+	}
+
+	@Benchmark
+	public void streamingAllFields(Blackhole blackhole) throws IOException {
+		Message message = messageDecoder.decode(frame);
+		blackhole.consume(message.getAddress());
+		blackhole.consume(message.getHeaders());
+		blackhole.consume(message.getBody());
+	}
+
+	@Benchmark
+	public Message tree() throws IOException {
+		JsonNode json = objectMapper.readTree(frame);
+		json.get("address").textValue();
+		return objectMapper.treeToValue(json, Message.class);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares encoding a {@link Message} through {@link ObjectMapper#writeValueAsBytes(Object)} with
+ * {@link MessageEncoder}. Run with {@code -prof gc} to see the allocation rate per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageEncodeBenchmark {
+	private static final String ADDRESS = "orders.updated";
+	private static final String BODY = "{\"id\":42,\"status\":\"SHIPPED\"}";
+
+	private ObjectMapper objectMapper;
+	private MessageEncoder messageEncoder;
+
+	@Setup
+	public void setup() {
+		objectMapper = new ObjectMapper();
+		messageEncoder = new MessageEncoder(objectMapper);
+	}
+
+	@Benchmark
+	public byte[] encoder() throws IOException {
+		return messageEncoder.encode(Message.MessageType.PUBLISH, ADDRESS, null, BODY, null);
+	}
+
+	@Benchmark
+	public byte[] objectMapper() throws IOException {
+		return objectMapper.writeValueAsBytes(new Message(Message.MessageType.PUBLISH, ADDRESS, new HashMap<>(), BODY));
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up the handlers of an inbound address in a registry holding twice the given number of pattern
+ * subscriptions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatternMatchBenchmark {
+	@Param({"10", "1000", "10000"})
+	private int tenants;
+	private HandlerRegistry registry;
+
+	@Setup
+	public void setup() {
+		registry = new HandlerRegistry();
+		HandlerRegistry.Registration registration = new HandlerRegistry.Registration(m -> {
+		}, null, null, null);
+		for (int i = 0; i < tenants; i++) {
+			registry.add("tenant" + i + ".orders.*.updated", registration, () -> {
+			});
+			registry.add("tenant" + i + ".invoices.>", registration, () -> {
+			});
+		}
+	}
+
+	@Benchmark
+	public HandlerRegistry.Registration[] match() {
+		return registry.match("tenant7.orders.42.updated");
+	}
+
+	@Benchmark
+	public HandlerRegistry.Registration[] miss() {
+		return registry.match("tenant7.payments.42.updated");
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Registers a pending reply and looks it up by its reply address, comparing random UUID addresses in a
+ * {@link ConcurrentHashMap} with {@link PendingReplies}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ReplyAddressBenchmark {
+	private final PendingReply reply = new PendingReply(m -> {
+	}, null);
+	private final Map<String, PendingReply> uuidReplies = new ConcurrentHashMap<>();
+	private final PendingReplies pendingReplies = new PendingReplies(0);
+
+	@Benchmark
+	public PendingReply counter() {
+		String address = pendingReplies.address(pendingReplies.put(reply));
+		return pendingReplies.remove(address);
+	}
+
+	@Benchmark
+	public PendingReply uuid() {
+		String address = UUID.randomUUID().toString();
+		uuidReplies.put(address, reply);
+		return uuidReplies.remove(address);
+	}
+}
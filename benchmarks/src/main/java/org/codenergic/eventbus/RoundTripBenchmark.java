@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmarks against an in-process Vert.x SockJS bridge. {@code requestReply} reports latency
+ * percentiles of one request/reply round trip; {@code publish} reports the throughput of publishing a burst of
+ * messages that the server publishes back to the client.
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+	private static final int BURST = 1000;
+	private static final String BODY = "{\"id\":42,\"status\":\"SHIPPED\"}";
+
+	private final AtomicReference<CountDownLatch> received = new AtomicReference<>(new CountDownLatch(0));
+	private BridgeServer server;
+	private EventBus eventBus;
+
+	@Setup
+	public void setup() throws Exception {
+		server = new BridgeServer();
+		eventBus = EventBus.newInstance(server.start()).openSync();
+		eventBus.registerHandler("benchmark-echo", message -> received.get().countDown());
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		eventBus.close();
+		server.stop();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Message requestReply() throws Exception {
+		return eventBus.request("benchmark", BODY).get(5, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(BURST)
+	public void publish() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(BURST);
+		received.set(latch);
+		for (int i = 0; i < BURST; i++) {
+			eventBus.publish("benchmark-publish", BODY);
+		}
+		if (!latch.await(10, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("Published messages were not received back");
+		}
+	}
+}
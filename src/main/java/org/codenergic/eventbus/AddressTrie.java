@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Index of address patterns. Addresses are split into segments at {@code '.'}; in a pattern {@code *} matches
+ * exactly one segment and a trailing {@code >} matches one or more. Changes are serialized, while matching walks the
+ * trie without locking in time proportional to the number of address segments, however many patterns there are.
+ */
+final class AddressTrie {
+	private final Node root = new Node();
+	private volatile int size;
+
+	static boolean isPattern(String address) {
+		// scans the segments in place, since every inbound address is checked when patterns are registered
+		int from = 0;
+		while (true) {
+			int end = address.indexOf('.', from);
+			boolean last = end < 0;
+			if (last) {
+				end = address.length();
+			}
+			if (end - from == 1) {
+				char c = address.charAt(from);
+				if (c == '*' || (c == '>' && last)) {
+					return true;
+				}
+			}
+			if (last) {
+				return false;
+			}
+			from = end + 1;
+		}
+	}
+
+	synchronized void add(String pattern) {
+		Node node = root;
+		String[] segments = pattern.split("\\.", -1);
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+			if (segment.equals(">") && i == segments.length - 1) {
+				if (node.tail == null) {
+					node.tail = pattern;
+					size++;
+				}
+				return;
+			}
+			if (segment.equals("*")) {
+				if (node.star == null) {
+					node.star = new Node();
+				}
+				node = node.star;
+			} else {
+				node = node.children.computeIfAbsent(segment, s -> new Node());
+			}
+		}
+		if (node.pattern == null) {
+			node.pattern = pattern;
+			size++;
+		}
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Calls {@code consumer} with every pattern matching the address.
+	 */
+	void match(String address, Consumer<String> consumer) {
+		if (size > 0) {
+			match(root, address, 0, consumer);
+		}
+	}
+
+	boolean matches(String address) {
+		boolean[] matched = new boolean[1];
+		match(address, pattern -> matched[0] = true);
+		return matched[0];
+	}
+
+	synchronized void remove(String pattern) {
+		if (remove(root, pattern.split("\\.", -1), 0)) {
+			size--;
+		}
+	}
+
+	private static boolean remove(Node node, String[] segments, int index) {
+		String segment = segments[index];
+		boolean last = index == segments.length - 1;
+		if (last && segment.equals(">")) {
+			boolean removed = node.tail != null;
+			node.tail = null;
+			return removed;
+		}
+		Node child = segment.equals("*") ? node.star : node.children.get(segment);
+		if (child == null) {
+			return false;
+		}
+		boolean removed;
+		if (last) {
+			removed = child.pattern != null;
+			child.pattern = null;
+		} else {
+			removed = remove(child, segments, index + 1);
+		}
+		if (child.isEmpty()) {
+			if (segment.equals("*")) {
+				node.star = null;
+			} else {
+				node.children.remove(segment);
+			}
+		}
+		return removed;
+	}
+
+	private static void match(Node node, String address, int from, Consumer<String> consumer) {
+		String tail = node.tail;
+		if (tail != null) {
+			consumer.accept(tail);
+		}
+		int end = address.indexOf('.', from);
+		if (end < 0) {
+			end = address.length();
+		}
+		if (!node.children.isEmpty()) {
+			Node child = node.children.get(address.substring(from, end));
+			if (child != null) {
+				visit(child, address, end, consumer);
+			}
+		}
+		Node star = node.star;
+		if (star != null) {
+			visit(star, address, end, consumer);
+		}
+	}
+
+	private static void visit(Node node, String address, int end, Consumer<String> consumer) {
+		if (end == address.length()) {
+			String pattern = node.pattern;
+			if (pattern != null) {
+				consumer.accept(pattern);
+			}
+		} else {
+			match(node, address, end + 1, consumer);
+		}
+	}
+
+	private static final class Node {
+		final Map<String, Node> children = new ConcurrentHashMap<>();
+		volatile Node star;
+		volatile String tail;
+		volatile String pattern;
+
+		boolean isEmpty() {
+			return children.isEmpty() && star == null && tail == null && pattern == null;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+
+/**
+ * Vert.x SockJS bridge event handler splitting batches of {@link BatchPublisher} into one event bus message per body.
+ * Other events pass through unchanged. Bridge event handlers run before the bridge checks permissions, so every body
+ * is checked against the inbound permitted options of the bridge here: bodies no option permits are dropped and the
+ * socket gets one {@code access_denied} error per batch, as the bridge answers a denied frame. Options requiring an
+ * authority cannot be checked from the handler and never permit a body. A batch whose body is not an array is
+ * rejected like any frame the handler refuses.
+ * <p>
+ * A batch that was split is left incomplete: completing it with {@code false} would answer it with a
+ * {@code rejected} error, and failing it logs one. The Vert.x 3.x bridge only acts once the event completes and
+ * holds nothing else for it, so an incomplete event is dropped with the frame.
+ * <p>
+ * Vert.x is not a dependency of the client; servers using this handler bring their own {@code vertx-web}.
+ */
+public final class BatchBridgeHandler implements Handler<BridgeEvent> {
+	private final EventBus eventBus;
+	private final List<Permission> inboundPermitted = new ArrayList<>();
+
+	public BatchBridgeHandler(EventBus eventBus, BridgeOptions bridgeOptions) {
+		this.eventBus = eventBus;
+		for (PermittedOptions options : bridgeOptions.getInboundPermitteds()) {
+			inboundPermitted.add(new Permission(options));
+		}
+	}
+
+	@Override
+	public void handle(BridgeEvent event) {
+		JsonObject frame = event.getRawMessage();
+		JsonObject headers = frame == null ? null : frame.getJsonObject("headers");
+		if ((event.type() != BridgeEventType.PUBLISH && event.type() != BridgeEventType.SEND)
+				|| headers == null || !headers.containsKey(BatchPublisher.BATCH_HEADER)) {
+			event.complete(true);
+			return;
+		}
+		DeliveryOptions options = new DeliveryOptions();
+		headers.forEach(header -> {
+			if (!BatchPublisher.BATCH_HEADER.equals(header.getKey())) {
+				options.addHeader(header.getKey(), String.valueOf(header.getValue()));
+			}
+		});
+		Object batch = frame.getValue("body");
+		if (!(batch instanceof JsonArray)) {
+			event.complete(false);
+			return;
+		}
+		String address = frame.getString("address");
+		JsonArray bodies = (JsonArray) batch;
+		boolean denied = false;
+		for (Object body : bodies) {
+			if (!isPermitted(address, body)) {
+				denied = true;
+			} else if (event.type() == BridgeEventType.PUBLISH) {
+				eventBus.publish(address, body, options);
+			} else {
+				eventBus.send(address, body, options);
+			}
+		}
+		if (denied) {
+			event.socket().write(new JsonObject().put("type", "err").put("body", "access_denied").toBuffer());
+		}
+		// the batch itself must not reach the event bus, so the event is left incomplete
+	}
+
+	private boolean isPermitted(String address, Object body) {
+		for (Permission permission : inboundPermitted) {
+			if (permission.permits(address, body)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * One inbound permitted option, matched the way the bridge matches it.
+	 */
+	private static final class Permission {
+		private final String address;
+		private final Pattern addressRegex;
+		private final JsonObject match;
+		private final boolean requiresAuthority;
+
+		Permission(PermittedOptions options) {
+			this.address = options.getAddress();
+			this.addressRegex = options.getAddressRegex() == null ? null : Pattern.compile(options.getAddressRegex());
+			this.match = options.getMatch();
+			this.requiresAuthority = options.getRequiredAuthority() != null;
+		}
+
+		boolean permits(String address, Object body) {
+			if (requiresAuthority) {
+				return false;
+			}
+			boolean addressMatches = this.address != null ? this.address.equals(address)
+					: addressRegex == null || (address != null && addressRegex.matcher(address).matches());
+			return addressMatches && (match == null || (body instanceof JsonObject && matches(match, (JsonObject) body)));
+		}
+
+		private static boolean matches(JsonObject match, JsonObject body) {
+			for (Map.Entry<String, Object> field : match) {
+				Object value = body.getValue(field.getKey());
+				if (field.getValue() instanceof JsonObject && value instanceof JsonObject) {
+					if (!matches((JsonObject) field.getValue(), (JsonObject) value)) {
+						return false;
+					}
+				} else if (field.getValue() == null ? value != null : !field.getValue().equals(value)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
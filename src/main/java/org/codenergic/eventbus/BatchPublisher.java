@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Collects publishes per address and sends them as one batch frame once {@code maxBatchSize} bodies are waiting or
+ * {@code maxDelay} has passed since the first of them, whichever comes first. Batches carry
+ * {@link #BATCH_HEADER}; inbound messages carrying it are delivered to handlers one body at a time.
+ */
+public final class BatchPublisher implements AutoCloseable {
+	/**
+	 * Header marking a message whose body is the list of bodies of a batch. Its value is the number of bodies.
+	 */
+	public static final String BATCH_HEADER = "x-eventbus-batch";
+
+	private final EventBus eventBus;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final EventBusScheduler scheduler;
+	private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+	public BatchPublisher(EventBus eventBus, int maxBatchSize, long maxDelay, TimeUnit unit) {
+		this(eventBus, maxBatchSize, maxDelay, unit, EventBusScheduler.shared());
+	}
+
+	/**
+	 * @param scheduler times the flush of batches that do not fill up
+	 */
+	public BatchPublisher(EventBus eventBus, int maxBatchSize, long maxDelay, TimeUnit unit, EventBusScheduler scheduler) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be positive");
+		}
+		if (maxDelay < 0) {
+			throw new IllegalArgumentException("maxDelay must not be negative");
+		}
+		this.eventBus = eventBus;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		this.scheduler = scheduler;
+	}
+
+	static Map<String, Object> batchHeaders(Map<String, Object> headers, int size) {
+		return Headers.copyOf(headers).with(BATCH_HEADER, size);
+	}
+
+	/**
+	 * Splits a batch into one message per body. Bodies that are not strings become their JSON text.
+	 */
+	static void unbatch(Message batch, Consumer<Message> delivery) {
+		JsonNode bodies = batch.getBodyAsTree();
+		if (bodies == null || !bodies.isArray()) {
+			delivery.accept(batch);
+			return;
+		}
+		Headers headers = Headers.copyOf(batch.getHeaders()).without(BATCH_HEADER);
+		for (JsonNode body : bodies) {
+			Message message = new Message();
+			message.type = batch.getType();
+			message.address = batch.getAddress();
+			message.headers = headers;
+			message.body = body.isTextual() ? body.textValue() : body.toString();
+			message.objectMapper = batch.objectMapper;
+			delivery.accept(message);
+		}
+	}
+
+	/**
+	 * Adds a body to the batch of the address.
+	 *
+	 * @return completes once the batch holding the body was written
+	 */
+	public CompletableFuture<Void> publish(String address, Object body) {
+		while (true) {
+			Batch batch = batches.computeIfAbsent(address, this::newBatch);
+			boolean full;
+			synchronized (batch) {
+				if (batch.flushed) {
+					continue;
+				}
+				batch.bodies.add(body);
+				full = batch.bodies.size() >= maxBatchSize;
+			}
+			if (full) {
+				flush(address, batch);
+			}
+			return batch.written;
+		}
+	}
+
+	private Batch newBatch(String address) {
+		Batch batch = new Batch();
+		// a flush may block on a full send queue, so it runs on a callback thread rather than the timer thread
+		batch.timeout = scheduler.schedule(() -> flush(address, batch), scheduler.callbackExecutor(), maxDelayNanos,
+				TimeUnit.NANOSECONDS);
+		return batch;
+	}
+
+	/**
+	 * Sends every batch now.
+	 */
+	public void flush() {
+		batches.forEach(this::flush);
+	}
+
+	private void flush(String address, Batch batch) {
+		synchronized (batch) {
+			if (batch.flushed) {
+				return;
+			}
+			batch.flushed = true;
+		}
+		batches.remove(address, batch);
+		HashedWheelTimer.Timeout timeout = batch.timeout;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+		try {
+			eventBus.publishBatchAsync(address, batch.bodies).whenComplete((v, e) -> {
+				if (e == null) {
+					batch.written.complete(null);
+				} else {
+					batch.written.completeExceptionally(e);
+				}
+			});
+		} catch (RuntimeException e) {
+			batch.written.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Sends the batches still waiting.
+	 */
+	@Override
+	public void close() {
+		flush();
+	}
+
+	private static final class Batch {
+		final List<Object> bodies = new ArrayList<>();
+		final CompletableFuture<Void> written = new CompletableFuture<>();
+		volatile HashedWheelTimer.Timeout timeout;
+		boolean flushed;
+	}
+}
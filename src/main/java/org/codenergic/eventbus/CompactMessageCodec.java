@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Hand-written binary codec for bridges that implement it too. A frame is a version byte followed by tagged fields,
+ * the address always first:
+ * <pre>
+ * frame   = 0x01 field*
+ * field   = 0x01 string          type
+ *         | 0x02 string          address
+ *         | 0x03 string          replyAddress
+ *         | 0x04 varint header*  headers, preceded by their count
+ *         | 0x05 string          string body
+ *         | 0x06 int32 bytes     any other body, written by the object mapper
+ *         | 0x07 zigzag          failureCode
+ *         | 0x08 string          failureType
+ *         | 0x09 string          failureMessage
+ * header  = string value
+ * value   = 0x00 | 0x01 string | 0x02 zigzag | 0x03 | 0x04 | 0x05 int32 bytes
+ *           (null, string, integer, true, false, anything else written by the object mapper)
+ * string  = varint UTF-8
+ * </pre>
+ * Varints are unsigned LEB128, int32 lengths big endian. Frames are written into a per-thread buffer, and inbound
+ * messages are read lazily like those of {@link JacksonMessageCodec}, with bodies and headers left in the frame until
+ * they are asked for.
+ */
+public final class CompactMessageCodec implements MessageCodec {
+	private static final byte VERSION = 1;
+	private static final byte TYPE = 1;
+	private static final byte ADDRESS = 2;
+	private static final byte REPLY_ADDRESS = 3;
+	private static final byte HEADERS = 4;
+	private static final byte BODY_STRING = 5;
+	private static final byte BODY_OBJECT = 6;
+	private static final byte FAILURE_CODE = 7;
+	private static final byte FAILURE_TYPE = 8;
+	private static final byte FAILURE_MESSAGE = 9;
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_STRING = 1;
+	private static final byte VALUE_INTEGER = 2;
+	private static final byte VALUE_TRUE = 3;
+	private static final byte VALUE_FALSE = 4;
+	private static final byte VALUE_OBJECT = 5;
+	private static final ThreadLocal<FrameBuffer> BUFFERS = ThreadLocal.withInitial(FrameBuffer::new);
+
+	private final ObjectMapper objectMapper;
+	private final FrameScanner frameScanner = new Scanner();
+	private final byte[] ping;
+	private final byte[] barrier;
+
+	/**
+	 * @param objectMapper writes and reads bodies and header values other than strings, integers and booleans
+	 */
+	public CompactMessageCodec(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		FrameBuffer buffer = new FrameBuffer();
+		buffer.write(VERSION);
+		buffer.write(TYPE);
+		buffer.writeString("ping");
+		this.ping = buffer.toByteArray();
+		buffer.reset();
+		buffer.write(VERSION);
+		buffer.write(TYPE);
+		buffer.writeString(Message.MessageType.REGISTER.getEventBusMessageType());
+		this.barrier = buffer.toByteArray();
+	}
+
+	@Override
+	public byte[] encode(Message.MessageType type, String address, Map<String, Object> headers, Object body,
+						 String replyAddress) throws IOException {
+		FrameBuffer buffer = BUFFERS.get();
+		try {
+			buffer.write(VERSION);
+			buffer.write(ADDRESS);
+			buffer.writeString(address);
+			buffer.write(TYPE);
+			buffer.writeString(type.getEventBusMessageType());
+			if (headers != null && !headers.isEmpty()) {
+				buffer.write(HEADERS);
+				byte[] serialized = headers instanceof Headers ? serialized((Headers) headers) : null;
+				if (serialized != null) {
+					buffer.write(serialized);
+				} else {
+					writeHeaders(buffer, headers);
+				}
+			}
+			if (body instanceof String) {
+				buffer.write(BODY_STRING);
+				buffer.writeString((String) body);
+			} else if (body != null) {
+				buffer.write(BODY_OBJECT);
+				writeObject(buffer, body);
+			}
+			if (replyAddress != null) {
+				buffer.write(REPLY_ADDRESS);
+				buffer.writeString(replyAddress);
+			}
+			return buffer.toByteArray();
+		} finally {
+			buffer.reset();
+		}
+	}
+
+	/**
+	 * The kept form of headers, created when they are written for the second time and shared by the codecs of the
+	 * same object mapper, which keys it.
+	 */
+	private byte[] serialized(Headers headers) throws IOException {
+		byte[] serialized = (byte[]) headers.serialized(objectMapper);
+		if (serialized == null && headers.serializedBefore(objectMapper)) {
+			FrameBuffer buffer = new FrameBuffer();
+			writeHeaders(buffer, headers);
+			serialized = buffer.toByteArray();
+			headers.serialized(objectMapper, serialized);
+		}
+		return serialized;
+	}
+
+	private void writeHeaders(FrameBuffer buffer, Map<String, Object> headers) throws IOException {
+		buffer.writeVarint(headers.size());
+		for (Map.Entry<String, Object> header : headers.entrySet()) {
+			buffer.writeString(header.getKey());
+			writeValue(buffer, header.getValue());
+		}
+	}
+
+	private void writeValue(FrameBuffer buffer, Object value) throws IOException {
+		if (value == null) {
+			buffer.write(VALUE_NULL);
+		} else if (value instanceof String) {
+			buffer.write(VALUE_STRING);
+			buffer.writeString((String) value);
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			buffer.write(VALUE_INTEGER);
+			long number = ((Number) value).longValue();
+			buffer.writeVarint((number << 1) ^ (number >> 63));
+		} else if (value instanceof Boolean) {
+			buffer.write((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+		} else {
+			buffer.write(VALUE_OBJECT);
+			writeObject(buffer, value);
+		}
+	}
+
+	private void writeObject(FrameBuffer buffer, Object value) throws IOException {
+		int lengthAt = buffer.size;
+		buffer.writeInt(0);
+		objectMapper.writeValue(buffer, value);
+		buffer.setInt(lengthAt, buffer.size - lengthAt - 4);
+	}
+
+	@Override
+	public Message decode(byte[] frame) throws IOException {
+		FrameReader reader = new FrameReader(frame, 0, frame.length);
+		if (reader.readByte() != VERSION) {
+			throw new IOException("Unknown compact frame version " + frame[0]);
+		}
+		String address = reader.hasMore() && reader.readByte() == ADDRESS ? reader.readString() : null;
+		return new LazyMessage(address, frame, frameScanner, objectMapper);
+	}
+
+	@Override
+	public byte[] ping() {
+		return ping;
+	}
+
+	@Override
+	public byte[] barrier() {
+		return barrier;
+	}
+
+	private final class Scanner implements FrameScanner {
+		@Override
+		public void scan(LazyMessage message, byte[] frame) throws IOException {
+			FrameReader reader = new FrameReader(frame, 1, frame.length - 1);
+			while (reader.hasMore()) {
+				byte tag = reader.readByte();
+				switch (tag) {
+					case TYPE:
+						message.type = reader.readString();
+						break;
+					case ADDRESS:
+						reader.skip(reader.readVarint());
+						break;
+					case REPLY_ADDRESS:
+						message.replyAddress = reader.readString();
+						break;
+					case HEADERS:
+						int offset = reader.position;
+						reader.skipHeaders();
+						message.setRawHeaders(offset, reader.position - offset);
+						break;
+					case BODY_STRING:
+						message.body = reader.readString();
+						break;
+					case BODY_OBJECT:
+						int length = reader.require(reader.readInt());
+						message.setRawBody(frame, reader.position, length);
+						reader.skip(length);
+						break;
+					case FAILURE_CODE:
+						message.failureCode = (int) reader.readZigzag();
+						break;
+					case FAILURE_TYPE:
+						message.failureType = reader.readString();
+						break;
+					case FAILURE_MESSAGE:
+						message.failureMessage = reader.readString();
+						break;
+					default:
+						throw new IOException("Unknown compact field " + tag);
+				}
+			}
+		}
+
+		@Override
+		public Map<String, Object> decodeHeaders(byte[] frame, int offset, int length) throws IOException {
+			FrameReader reader = new FrameReader(frame, offset, length);
+			// every header takes at least one byte, which bounds the arrays by the frame
+			int count = reader.require(reader.readVarint());
+			String[] names = new String[count];
+			Object[] values = new Object[count];
+			for (int i = 0; i < count; i++) {
+				names[i] = reader.readString();
+				values[i] = readValue(reader);
+			}
+			return Headers.decoded(names, values, count);
+		}
+
+		private Object readValue(FrameReader reader) throws IOException {
+			byte tag = reader.readByte();
+			switch (tag) {
+				case VALUE_NULL:
+					return null;
+				case VALUE_STRING:
+					return reader.readString();
+				case VALUE_INTEGER:
+					long number = reader.readZigzag();
+					// the same types the JSON decoder gives
+					return number == (int) number ? (Object) (int) number : (Object) number;
+				case VALUE_TRUE:
+					return Boolean.TRUE;
+				case VALUE_FALSE:
+					return Boolean.FALSE;
+				case VALUE_OBJECT:
+					int length = reader.require(reader.readInt());
+					Object value = objectMapper.readValue(reader.frame, reader.position, length, Object.class);
+					reader.skip(length);
+					return value;
+				default:
+					throw new IOException("Unknown compact value " + tag);
+			}
+		}
+	}
+
+	private static final class FrameReader {
+		final byte[] frame;
+		final int end;
+		int position;
+
+		FrameReader(byte[] frame, int offset, int length) {
+			this.frame = frame;
+			this.position = offset;
+			this.end = offset + length;
+		}
+
+		boolean hasMore() {
+			return position < end;
+		}
+
+		byte readByte() throws IOException {
+			if (position >= end) {
+				throw new IOException("Truncated compact frame");
+			}
+			return frame[position++];
+		}
+
+		long readVarint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint in compact frame");
+		}
+
+		long readZigzag() throws IOException {
+			long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		int readInt() throws IOException {
+			return (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16 | (readByte() & 0xFF) << 8 | readByte() & 0xFF;
+		}
+
+		String readString() throws IOException {
+			int length = require(readVarint());
+			String value = new String(frame, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+
+		/**
+		 * Checks that a length read from the frame fits in what is left of it, so a malformed frame fails with an
+		 * {@link IOException} instead of reading past its end.
+		 */
+		int require(long length) throws IOException {
+			if (length < 0 || length > end - position) {
+				throw new IOException("Truncated compact frame");
+			}
+			return (int) length;
+		}
+
+		void skip(long length) throws IOException {
+			position += require(length);
+		}
+
+		void skipHeaders() throws IOException {
+			long count = readVarint();
+			for (long i = 0; i < count; i++) {
+				skip(readVarint());
+				byte tag = readByte();
+				if (tag == VALUE_STRING) {
+					skip(readVarint());
+				} else if (tag == VALUE_INTEGER) {
+					readVarint();
+				} else if (tag == VALUE_OBJECT) {
+					skip(readInt());
+				}
+			}
+		}
+	}
+
+	private static final class FrameBuffer extends OutputStream {
+		private static final int INITIAL_CAPACITY = 512;
+		private static final int RETAINED_CAPACITY = 64 * 1024;
+
+		private byte[] bytes = new byte[INITIAL_CAPACITY];
+		private int size;
+
+		private void ensureCapacity(int additional) {
+			if (size + additional > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+			}
+		}
+
+		@Override
+		public void write(int b) {
+			ensureCapacity(1);
+			bytes[size++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			ensureCapacity(len);
+			System.arraycopy(b, off, bytes, size, len);
+			size += len;
+		}
+
+		void writeVarint(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+
+		void writeInt(int value) {
+			ensureCapacity(4);
+			setInt(size, value);
+			size += 4;
+		}
+
+		void setInt(int position, int value) {
+			bytes[position] = (byte) (value >>> 24);
+			bytes[position + 1] = (byte) (value >>> 16);
+			bytes[position + 2] = (byte) (value >>> 8);
+			bytes[position + 3] = (byte) value;
+		}
+
+		void writeString(String value) {
+			int length = value.length();
+			for (int i = 0; i < length; i++) {
+				if (value.charAt(i) >= 0x80) {
+					byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+					writeVarint(utf8.length);
+					write(utf8, 0, utf8.length);
+					return;
+				}
+			}
+			// ASCII is copied without an intermediate array
+			writeVarint(length);
+			ensureCapacity(length);
+			for (int i = 0; i < length; i++) {
+				bytes[size++] = (byte) value.charAt(i);
+			}
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, size);
+		}
+
+		void reset() {
+			size = 0;
+			if (bytes.length > RETAINED_CAPACITY) {
+				bytes = new byte[INITIAL_CAPACITY];
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link EventBusMetrics} backed by {@link LongAdder} counters and {@link LatencyHistogram}s. One instance may be
+ * shared by several connections. {@link #snapshot()} returns all values by name, ready to be exported.
+ */
+public class DefaultEventBusMetrics implements EventBusMetrics {
+	private final LongAdder connectionsOpened = new LongAdder();
+	private final LongAdder connectionsClosed = new LongAdder();
+	private final LongAdder reconnectAttempts = new LongAdder();
+	private final LongAdder framesSent = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder framesReceived = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder messagesHandled = new LongAdder();
+	private final LongAdder handlerFailures = new LongAdder();
+	private final LongAdder messagesRejected = new LongAdder();
+	private final LongAdder repliesRegistered = new LongAdder();
+	private final LongAdder repliesRejected = new LongAdder();
+	private final LongAdder repliesReceived = new LongAdder();
+	private final LongAdder repliesFailed = new LongAdder();
+	private final LatencyHistogram handlerLatency = new LatencyHistogram();
+	private final LatencyHistogram replyRoundTrip = new LatencyHistogram();
+
+	@Override
+	public void connectionOpened() {
+		connectionsOpened.increment();
+	}
+
+	@Override
+	public void connectionClosed() {
+		connectionsClosed.increment();
+	}
+
+	@Override
+	public void reconnectAttempted() {
+		reconnectAttempts.increment();
+	}
+
+	@Override
+	public void frameSent(int bytes) {
+		framesSent.increment();
+		bytesSent.add(bytes);
+	}
+
+	@Override
+	public void frameReceived(int bytes) {
+		framesReceived.increment();
+		bytesReceived.add(bytes);
+	}
+
+	@Override
+	public void messageHandled(String address, long durationNanos, boolean failed) {
+		messagesHandled.increment();
+		if (failed) {
+			handlerFailures.increment();
+		}
+		handlerLatency.record(durationNanos);
+	}
+
+	@Override
+	public void messageRejected(String address) {
+		messagesRejected.increment();
+	}
+
+	@Override
+	public void replyRegistered() {
+		repliesRegistered.increment();
+	}
+
+	@Override
+	public void replyRejected() {
+		repliesRejected.increment();
+	}
+
+	@Override
+	public void replyReceived(long roundTripNanos) {
+		repliesReceived.increment();
+		replyRoundTrip.record(roundTripNanos);
+	}
+
+	@Override
+	public void replyFailed() {
+		repliesFailed.increment();
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	public long getFramesReceived() {
+		return framesReceived.sum();
+	}
+
+	public long getFramesSent() {
+		return framesSent.sum();
+	}
+
+	public long getHandlerFailures() {
+		return handlerFailures.sum();
+	}
+
+	public LatencyHistogram getHandlerLatency() {
+		return handlerLatency;
+	}
+
+	public long getMessagesHandled() {
+		return messagesHandled.sum();
+	}
+
+	public long getMessagesRejected() {
+		return messagesRejected.sum();
+	}
+
+	public long getPendingReplies() {
+		return repliesRegistered.sum() - repliesReceived.sum() - repliesFailed.sum();
+	}
+
+	public long getReconnectAttempts() {
+		return reconnectAttempts.sum();
+	}
+
+	public LatencyHistogram getReplyRoundTrip() {
+		return replyRoundTrip;
+	}
+
+	public long getRepliesFailed() {
+		return repliesFailed.sum();
+	}
+
+	public long getRepliesReceived() {
+		return repliesReceived.sum();
+	}
+
+	public long getRepliesRejected() {
+		return repliesRejected.sum();
+	}
+
+	public Map<String, Number> snapshot() {
+		Map<String, Number> snapshot = new LinkedHashMap<>();
+		snapshot.put("connections.opened", connectionsOpened.sum());
+		snapshot.put("connections.closed", connectionsClosed.sum());
+		snapshot.put("reconnect.attempts", reconnectAttempts.sum());
+		snapshot.put("frames.sent", framesSent.sum());
+		snapshot.put("bytes.sent", bytesSent.sum());
+		snapshot.put("frames.received", framesReceived.sum());
+		snapshot.put("bytes.received", bytesReceived.sum());
+		snapshot.put("messages.handled", messagesHandled.sum());
+		snapshot.put("messages.failed", handlerFailures.sum());
+		snapshot.put("messages.rejected", messagesRejected.sum());
+		snapshot.put("replies.pending", getPendingReplies());
+		snapshot.put("replies.rejected", repliesRejected.sum());
+		snapshot.put("replies.received", repliesReceived.sum());
+		snapshot.put("replies.failed", repliesFailed.sum());
+		putHistogram(snapshot, "handler.latency", handlerLatency);
+		putHistogram(snapshot, "reply.roundtrip", replyRoundTrip);
+		return snapshot;
+	}
+
+	private static void putHistogram(Map<String, Number> snapshot, String name, LatencyHistogram histogram) {
+		snapshot.put(name + ".count", histogram.getCount());
+		snapshot.put(name + ".mean", histogram.getMean());
+		snapshot.put(name + ".p50", histogram.getValueAtPercentile(50));
+		snapshot.put(name + ".p99", histogram.getValueAtPercentile(99));
+		snapshot.put(name + ".p999", histogram.getValueAtPercentile(99.9));
+		snapshot.put(name + ".max", histogram.getMax());
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+/**
+ * Builds permessage-deflate payloads out of uncompressed DEFLATE blocks (RFC 7692, section 7.2.3.3). A frame
+ * carrying one has its RSV1 bit set, so the socket writer sends it as it is instead of deflating it, while the
+ * server still reads it as a compressed message.
+ */
+final class DeflateBlocks {
+	private static final int MAX_BLOCK = 0xFFFF;
+
+	private DeflateBlocks() {
+	}
+
+	/**
+	 * @return the payload in stored blocks, followed by the header byte of the empty block whose remaining
+	 * {@code 00 00 ff ff} the receiver appends
+	 */
+	static byte[] stored(byte[] payload) {
+		int blocks = Math.max(1, (payload.length + MAX_BLOCK - 1) / MAX_BLOCK);
+		byte[] stored = new byte[payload.length + blocks * 5 + 1];
+		int in = 0;
+		int out = 0;
+		for (int i = 0; i < blocks; i++) {
+			int length = Math.min(MAX_BLOCK, payload.length - in);
+			// BFINAL 0, BTYPE 00, then LEN and NLEN in little endian
+			stored[out] = 0;
+			stored[out + 1] = (byte) length;
+			stored[out + 2] = (byte) (length >>> 8);
+			stored[out + 3] = (byte) ~length;
+			stored[out + 4] = (byte) (~length >>> 8);
+			System.arraycopy(payload, in, stored, out + 5, length);
+			in += length;
+			out += length + 5;
+		}
+		stored[out] = 0;
+		return stored;
+	}
+}
@@ -16,18 +16,28 @@
 package org.codenergic.eventbus;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import org.reactivestreams.Publisher;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketFactory;
 
 public interface EventBus {
+	static EventBus newInstance(WebSocket webSocket, ObjectMapper objectMapper, EventBusOptions options) {
+		if (options.getConnections() > 1) {
+			return new EventBusPool(webSocket, objectMapper, options);
+		}
+		return new EventBusAdapter(webSocket, objectMapper, options);
+	}
+
 	static EventBus newInstance(WebSocket webSocket, ObjectMapper objectMapper, int pingInterval) {
-		return new EventBusAdapter(webSocket, objectMapper, pingInterval);
+		return newInstance(webSocket, objectMapper, new EventBusOptions().setPingInterval(pingInterval));
 	}
 
 	static EventBus newInstance(WebSocket webSocket, ObjectMapper objectMapper) {
@@ -39,7 +49,7 @@ public interface EventBus {
 	}
 
 	static EventBus newInstance(WebSocket webSocket, int pingInterval) {
-		return new EventBusAdapter(webSocket, new ObjectMapper(), pingInterval);
+		return newInstance(webSocket, new ObjectMapper(), pingInterval);
 	}
 
 	static EventBus newInstance(String address, int pingInterval) {
@@ -50,12 +60,31 @@ public interface EventBus {
 		}
 	}
 
+	static EventBus newInstance(String address, EventBusOptions options) {
+		try {
+			return newInstance(new WebSocketFactory().createSocket(address), new ObjectMapper(), options);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	static EventBus newInstance(String address) {
 		return newInstance(address, 5000);
 	}
 
 	void close();
 
+	int getDispatchQueueDepth();
+
+	int getDispatchQueueDepth(String address);
+
+	/**
+	 * Number of requests awaiting a reply.
+	 *
+	 * @see EventBusOptions#setMaxPendingReplies(int)
+	 */
+	int getPendingReplies();
+
 	void onClose(Consumer<EventBus> connectionHandler);
 
 	void onOpen(Consumer<EventBus> connectionHandler);
@@ -64,11 +93,49 @@ public interface EventBus {
 
 	EventBus openSync();
 
-	default void publish(String address, String message) {
+	default void publish(String address, Object message) {
 		publish(address, message, null);
 	}
 
-	void publish(String address, String message, Map<String, Object> headers);
+	void publish(String address, Object message, Map<String, Object> headers);
+
+	default CompletableFuture<Void> publishAsync(String address, Object message) {
+		return publishAsync(address, message, null);
+	}
+
+	CompletableFuture<Void> publishAsync(String address, Object message, Map<String, Object> headers);
+
+	default void publishBatch(String address, List<?> bodies) {
+		publishBatch(address, bodies, null);
+	}
+
+	/**
+	 * Publishes the bodies in one frame, marked with {@link BatchPublisher#BATCH_HEADER}. The bridge has to split
+	 * the batch into single messages before they reach the event bus; the stock Vert.x bridge publishes it as one
+	 * message with a list body.
+	 */
+	default void publishBatch(String address, List<?> bodies, Map<String, Object> headers) {
+		publish(address, bodies, BatchPublisher.batchHeaders(headers, bodies.size()));
+	}
+
+	default CompletableFuture<Void> publishBatchAsync(String address, List<?> bodies) {
+		return publishBatchAsync(address, bodies, null);
+	}
+
+	default CompletableFuture<Void> publishBatchAsync(String address, List<?> bodies, Map<String, Object> headers) {
+		return publishAsync(address, bodies, BatchPublisher.batchHeaders(headers, bodies.size()));
+	}
+
+	default MessageSink publishSubscriber(String address) {
+		return new MessageSink(this, address, true, MessageSink.DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Subscriber publishing every item to the address, requesting at most {@code window} items ahead of the socket.
+	 */
+	default MessageSink publishSubscriber(String address, int window) {
+		return new MessageSink(this, address, true, window);
+	}
 
 	default void registerHandler(String address, Consumer<Message> handler) {
 		registerHandler(address, null, handler);
@@ -84,23 +151,63 @@ public interface EventBus {
 		});
 	}
 
-	void registerHandler(String address, Map<String, Object> headers, Consumer<Message> handler, BiConsumer<Message, Throwable> errorHandler);
+	default void registerHandler(String address, Map<String, Object> headers, Consumer<Message> handler, BiConsumer<Message, Throwable> errorHandler) {
+		registerHandler(address, headers, null, handler, errorHandler);
+	}
+
+	/**
+	 * @param options isolates the handler from the other handlers of the address, may be {@code null}
+	 */
+	void registerHandler(String address, Map<String, Object> headers, HandlerOptions options, Consumer<Message> handler,
+						 BiConsumer<Message, Throwable> errorHandler);
+
+	default CompletableFuture<Message> request(String address, Object message) {
+		return request(address, message, null);
+	}
+
+	CompletableFuture<Message> request(String address, Object message, Map<String, Object> headers);
 
-	default void send(String address, String message) {
+	CompletableFuture<Message> request(String address, Object message, Map<String, Object> headers, long timeout);
+
+	default void send(String address, Object message) {
 		send(address, message, null);
 	}
 
-	default void send(String address, String message, Map<String, Object> headers) {
+	default void send(String address, Object message, Map<String, Object> headers) {
 		send(address, message, headers, null);
 	}
 
-	default void send(String address, String message, Map<String, Object> headers, Consumer<Message> replyHandler) {
+	default void send(String address, Object message, Map<String, Object> headers, Consumer<Message> replyHandler) {
 		send(address, message, headers, replyHandler, (m, e) -> {
 			// do nothing
 		});
 	}
 
-	void send(String address, String message, Map<String, Object> headers, Consumer<Message> replyHandler, BiConsumer<Message, Throwable> errorHandler);
+	void send(String address, Object message, Map<String, Object> headers, Consumer<Message> replyHandler, BiConsumer<Message, Throwable> errorHandler);
+
+	default CompletableFuture<Void> sendAsync(String address, Object message) {
+		return sendAsync(address, message, null);
+	}
+
+	CompletableFuture<Void> sendAsync(String address, Object message, Map<String, Object> headers);
+
+	default MessageSink sendSubscriber(String address) {
+		return new MessageSink(this, address, false, MessageSink.DEFAULT_WINDOW);
+	}
+
+	default MessageSink sendSubscriber(String address, int window) {
+		return new MessageSink(this, address, false, window);
+	}
+
+	/**
+	 * Publisher of the messages of an address, buffering as configured by
+	 * {@link EventBusOptions#setSubscriptionBufferSize(int)} until they are requested.
+	 */
+	Publisher<Message> subscribe(String address);
+
+	default Publisher<Message> subscribe(String address, int bufferSize, OverflowPolicy overflowPolicy) {
+		return new MessagePublisher(this, address, bufferSize, overflowPolicy);
+	}
 
 	default void unregisterHandler(String address, Consumer<Message> handler) {
 		unregisterHandler(address, null, handler);
@@ -16,26 +16,28 @@
 package org.codenergic.eventbus;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import org.reactivestreams.Publisher;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketCloseCode;
 import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketExtension;
 import com.neovisionaries.ws.client.WebSocketFrame;
 
 final class EventBusAdapter implements EventBus {
@@ -43,31 +45,125 @@ final class EventBusAdapter implements EventBus {
 	private static final int OPEN = 1;
 	private static final int CLOSING = 2;
 	private static final int CLOSED = 3;
+	private static final int RECONNECTING = 4;
 
-	private final WebSocket webSocket;
+	private volatile WebSocket webSocket;
+	private final MessageCodec messageCodec;
 	private final ObjectMapper objectMapper;
-	private final int pingInterval;
-	private final Timer timer = new Timer();
-	private final ExecutorService connectThreadPool = Executors.newCachedThreadPool();
-	private final Map<String, List<Consumer<Message>>> messageHandlers = new ConcurrentHashMap<>();
-	private final Map<String, Consumer<Message>> replyHandlers = new ConcurrentHashMap<>();
-	private final Map<Consumer<Message>, BiConsumer<Message, Throwable>> errorHandlers = new ConcurrentHashMap<>();
+	// tags messages delivered both locally and through the server, so their echo can be told apart
+	private final String origin = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+	// shared by every ping; the frame itself is created per send because the writer may compress it in place
+	private final byte[] ping;
+	private final byte[] storedPing;
+	private final byte[] barrier;
+	private final long pingInterval;
+	private final long silenceTimeout;
+	private final int compressionThreshold;
+	private final long replyTimeout;
+	private final boolean reconnect;
+	private final long reconnectInitialDelay;
+	private final long reconnectMaxDelay;
+	private final int reconnectAttempts;
+	private final int reconnectBufferCapacity;
+	private final LocalDelivery publishDelivery;
+	private final LocalDelivery sendDelivery;
+	private final int subscriptionBufferSize;
+	private final OverflowPolicy subscriptionOverflowPolicy;
+	private final ArrayDeque<OutboundQueue.OutboundFrame> reconnectBuffer = new ArrayDeque<>();
+	// addresses registered while the connection is down, guarded by the reconnect buffer like the state changes
+	private final Map<String, Map<String, Object>> deferredRegistrations = new LinkedHashMap<>();
+	private final OutboundQueue outboundQueue;
+	private final MessageDispatcher messageDispatcher;
+	// runs what a timeout completes, which may be user code, away from the timer thread
+	private final Executor timeoutExecutor;
+	private final EventBusMetrics metrics;
+	private final boolean metricsEnabled;
+	private final Map<WebSocketFrame, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
+	private final EventBusScheduler scheduler;
+	private final HandlerRegistry messageHandlers = new HandlerRegistry();
+	private final PendingReplies replyHandlers;
 	private Consumer<EventBus> onOpenHandler;
 	private Consumer<EventBus> onCloseHandler;
-	private TimerTask pingTask;
-	private int state = CONNECTING;
+	private volatile HashedWheelTimer.Timeout pingTask;
+	private volatile long lastRead;
+	private long nextPing;
+	private volatile HashedWheelTimer.Timeout reconnectTask;
+	private volatile CompletableFuture<Void> registered = CompletableFuture.completedFuture(null);
+	private volatile HashedWheelTimer.Timeout barrierTask;
+	private volatile int state = CONNECTING;
+	private volatile boolean deflate;
+	private int failedReconnects;
 
-	EventBusAdapter(WebSocket webSocket, ObjectMapper objectMapper, int pingInterval) {
+	EventBusAdapter(WebSocket webSocket, ObjectMapper objectMapper, EventBusOptions options) {
 		this.webSocket = webSocket;
 		this.objectMapper = objectMapper;
-		this.pingInterval = pingInterval;
+		this.messageCodec = options.getCodec() == null ? new JacksonMessageCodec(objectMapper) : options.getCodec();
+		this.ping = messageCodec.ping();
+		this.storedPing = DeflateBlocks.stored(ping);
+		this.barrier = messageCodec.barrier();
+		this.pingInterval = TimeUnit.MILLISECONDS.toNanos(options.getPingInterval());
+		this.silenceTimeout = TimeUnit.MILLISECONDS.toNanos(options.getSilenceTimeout());
+		this.compressionThreshold = options.getCompressionThreshold();
+		if (options.isCompression()) {
+			// a socket recreated from one that already offers it must not offer it twice
+			this.webSocket.removeExtensions(WebSocketExtension.PERMESSAGE_DEFLATE);
+			this.webSocket.addExtension(WebSocketExtension.PERMESSAGE_DEFLATE);
+		}
+		this.replyTimeout = options.getReplyTimeout();
+		this.replyHandlers = new PendingReplies(options.getMaxPendingReplies());
+		this.reconnect = options.isReconnect();
+		this.reconnectInitialDelay = options.getReconnectInitialDelay();
+		this.reconnectMaxDelay = options.getReconnectMaxDelay();
+		this.reconnectAttempts = options.getReconnectAttempts();
+		this.reconnectBufferCapacity = options.getReconnectBufferCapacity();
+		this.publishDelivery = options.getPublishDelivery();
+		this.sendDelivery = options.getSendDelivery();
+		this.subscriptionBufferSize = options.getSubscriptionBufferSize();
+		this.subscriptionOverflowPolicy = options.getSubscriptionOverflowPolicy();
+		this.metrics = options.getMetrics();
+		this.metricsEnabled = metrics != EventBusMetrics.NOOP;
+		this.scheduler = options.getScheduler() == null ? EventBusScheduler.shared() : options.getScheduler();
+		if (options.getSendQueueCapacity() > 0) {
+			this.webSocket.setAutoFlush(false);
+			this.outboundQueue = new OutboundQueue(options, this::writeFrame, () -> this.webSocket.flush());
+		} else {
+			this.outboundQueue = null;
+		}
+		this.messageDispatcher = new MessageDispatcher(options, this::deliver, this::reject);
+		this.timeoutExecutor = messageDispatcher.executorOr(scheduler.callbackExecutor());
 		init();
 	}
 
 	@Override
 	public void close() {
 		state = CLOSING;
+		if (outboundQueue != null) {
+			outboundQueue.close(1000);
+		}
 		webSocket.disconnect();
+		failPendingReplies();
+		failReconnectBuffer();
+		Optional.ofNullable(pingTask).ifPresent(HashedWheelTimer.Timeout::cancel);
+		Optional.ofNullable(reconnectTask).ifPresent(HashedWheelTimer.Timeout::cancel);
+		Optional.ofNullable(barrierTask).ifPresent(HashedWheelTimer.Timeout::cancel);
+		messageDispatcher.close();
+	}
+
+	private void failReconnectBuffer() {
+		synchronized (reconnectBuffer) {
+			OutboundQueue.OutboundFrame frame;
+			while ((frame = reconnectBuffer.poll()) != null) {
+				frame.fail(new IllegalStateException("Connection closed before the message was sent"));
+			}
+		}
+	}
+
+	private void failPendingReplies() {
+		replyHandlers.drain(reply -> {
+			reply.cancelTimeout();
+			metrics.replyFailed();
+			reply.fail(new IllegalStateException("Connection closed before a reply was received"));
+		});
 	}
 
 	private void init() {
@@ -78,58 +174,315 @@ final class EventBusAdapter implements EventBus {
 			}
 
 			@Override
-			public void onCloseFrame(WebSocket ws, WebSocketFrame frame) {
-				state = CLOSED;
-				pingTask.cancel();
-				Optional.ofNullable(onCloseHandler).ifPresent(h -> h.accept(EventBusAdapter.this));
+			public void onFrame(WebSocket ws, WebSocketFrame frame) {
+				lastRead = System.nanoTime();
 			}
 
 			@Override
-			public void onConnected(final WebSocket ws, Map<String, List<String>> headers) {
-				state = OPEN;
-				pingTask = new TimerTask() {
-					@Override
-					public void run() {
-						// send ping
-						ws.sendBinary("{\"type\":\"ping\"}".getBytes());
-					}
-				};
-				timer.schedule(pingTask, 0, pingInterval);
-				Optional.ofNullable(onOpenHandler).ifPresent(h -> h.accept(EventBusAdapter.this));
+			public void onFrameSent(WebSocket ws, WebSocketFrame frame) {
+				Optional.ofNullable(pendingWrites.remove(frame)).ifPresent(f -> f.complete(null));
+			}
+
+			@Override
+			public void onFrameUnsent(WebSocket ws, WebSocketFrame frame) {
+				Optional.ofNullable(pendingWrites.remove(frame))
+						.ifPresent(f -> f.completeExceptionally(new IllegalStateException("Frame was not sent")));
+			}
+
+			@Override
+			public void onDisconnected(WebSocket ws, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame,
+									   boolean closedByServer) {
+				onDisconnect(ws);
 			}
 		});
 	}
 
+	/**
+	 * Completes an opening handshake. Called on the connecting thread once {@link WebSocket#connect()} returns,
+	 * rather than from {@code onConnected}, so that the bus is open as soon as {@link #openSync()} returns.
+	 */
+	private boolean onConnect(WebSocket ws) {
+		synchronized (reconnectBuffer) {
+			if (ws != webSocket || !ws.isOpen() || state == CLOSING || state == CLOSED) {
+				return false;
+			}
+			failedReconnects = 0;
+			deflate = ws.getAgreedExtensions() != null && ws.getAgreedExtensions().stream()
+					.anyMatch(extension -> WebSocketExtension.PERMESSAGE_DEFLATE.equals(extension.getName()));
+			for (String address : messageHandlers.addresses()) {
+				HandlerRegistry.Registration[] registrations = messageHandlers.get(address);
+				if (registrations.length > 0) {
+					deferredRegistrations.putIfAbsent(address, registrations[0].headers);
+				}
+			}
+			if (deferredRegistrations.isEmpty()) {
+				registered = CompletableFuture.completedFuture(null);
+			} else {
+				register(ws);
+			}
+			OutboundQueue.OutboundFrame frame;
+			while ((frame = reconnectBuffer.poll()) != null) {
+				write(frame);
+			}
+			state = OPEN;
+		}
+		metrics.connectionOpened();
+		long now = System.nanoTime();
+		lastRead = now;
+		nextPing = now + pingInterval;
+		scheduleKeepAlive(ws, pingInterval);
+		Optional.ofNullable(onOpenHandler).ifPresent(h -> h.accept(this));
+		return true;
+	}
+
+	/**
+	 * Writes the REGISTER frames of a new connection in one burst, followed by a barrier frame whose answer
+	 * completes {@link #registered}. The bridge does not acknowledge registrations, so the answer only shows that it
+	 * has read the frames before the barrier; the registrations are in place by then as long as the bridge handles
+	 * REGISTER frames synchronously and in order, as the Vert.x bridge does when its bridge event handler completes
+	 * REGISTER events right away.
+	 */
+	private void register(WebSocket ws) {
+		CompletableFuture<Void> processed = new CompletableFuture<>();
+		registered = processed;
+		if (replyTimeout > 0) {
+			barrierTask = scheduler.schedule(() -> processed.completeExceptionally(
+					new TimeoutException("Registration barrier not answered within " + replyTimeout + "ms")),
+					timeoutExecutor, replyTimeout, TimeUnit.MILLISECONDS);
+		}
+		// the send queue flushes on its own, direct writes are held back until the burst is complete
+		boolean holdBack = outboundQueue == null;
+		if (holdBack) {
+			ws.setAutoFlush(false);
+		}
+		for (Map.Entry<String, Map<String, Object>> registration : deferredRegistrations.entrySet()) {
+			write(encode(Message.MessageType.REGISTER, registration.getKey(), null, registration.getValue(), null, null));
+		}
+		deferredRegistrations.clear();
+		write(new OutboundQueue.OutboundFrame(WebSocketFrame.createBinaryFrame(barrier), null));
+		if (holdBack) {
+			ws.setAutoFlush(true);
+			ws.flush();
+		}
+	}
+
+	private void onDisconnect(WebSocket ws) {
+		boolean reconnecting;
+		synchronized (reconnectBuffer) {
+			if (ws != webSocket || (state != OPEN && state != CLOSING)) {
+				return;
+			}
+			reconnecting = reconnect && state == OPEN;
+			state = reconnecting ? RECONNECTING : CLOSED;
+		}
+		Optional.ofNullable(pingTask).ifPresent(HashedWheelTimer.Timeout::cancel);
+		Optional.ofNullable(barrierTask).ifPresent(HashedWheelTimer.Timeout::cancel);
+		registered.completeExceptionally(new IllegalStateException("Connection closed before the registration barrier was answered"));
+		metrics.connectionClosed();
+		// replies are addressed to the dropped socket and never arrive on a new one
+		failPendingReplies();
+		Optional.ofNullable(onCloseHandler).ifPresent(h -> h.accept(this));
+		if (reconnecting) {
+			scheduleReconnect();
+		}
+	}
+
+	private void scheduleReconnect() {
+		if (reconnectAttempts > 0 && failedReconnects >= reconnectAttempts) {
+			synchronized (reconnectBuffer) {
+				if (state == RECONNECTING) {
+					state = CLOSED;
+				}
+			}
+			failReconnectBuffer();
+			return;
+		}
+		long ceiling = Math.min(reconnectMaxDelay, reconnectInitialDelay << Math.min(failedReconnects, 30));
+		long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+		failedReconnects++;
+		reconnectTask = scheduler.schedule(this::reconnect, scheduler.connectExecutor(), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void reconnect() {
+		if (state != RECONNECTING) {
+			return;
+		}
+		metrics.reconnectAttempted();
+		WebSocket ws = null;
+		try {
+			// recreate() keeps the factory, handshake headers, extensions and listeners of the dropped socket
+			ws = webSocket.recreate();
+			webSocket = ws;
+			ws.connect();
+			if (onConnect(ws)) {
+				return;
+			}
+		} catch (IOException | WebSocketException e) {
+			// retried below
+		}
+		if (state == RECONNECTING) {
+			scheduleReconnect();
+		} else if (ws != null) {
+			ws.disconnect();
+		}
+	}
+
+	private void scheduleKeepAlive(WebSocket ws, long delay) {
+		HashedWheelTimer.Timeout task = scheduler.schedule(() -> keepAlive(ws), Math.max(delay, 1), TimeUnit.NANOSECONDS);
+		pingTask = task;
+		// close() may have cancelled the previous task while this one was being scheduled
+		if (state != OPEN) {
+			task.cancel();
+		}
+	}
+
+	/**
+	 * Pings the bridge every ping interval, since bridges only count pings towards their session timeout. With a
+	 * silence timeout, a server that has not been heard from for a ping interval is also probed with a WebSocket
+	 * ping, and the connection is dropped once nothing arrived for the whole timeout.
+	 */
+	private void keepAlive(WebSocket ws) {
+		if (state != OPEN || ws != webSocket) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (now - nextPing >= 0) {
+			ws.sendFrame(deflate ? WebSocketFrame.createBinaryFrame(storedPing).setRsv1(true)
+					: WebSocketFrame.createBinaryFrame(ping));
+			if (outboundQueue != null) {
+				// the socket only flushes control frames on its own once the send queue has turned auto flush off
+				ws.flush();
+			}
+			nextPing = now + pingInterval;
+		}
+		long delay = nextPing - now;
+		if (silenceTimeout > 0) {
+			long silent = now - lastRead;
+			if (silent >= silenceTimeout) {
+				ws.disconnect(WebSocketCloseCode.AWAY, "Nothing received for " + TimeUnit.NANOSECONDS.toMillis(silent) + " ms", 0);
+				return;
+			}
+			if (silent >= pingInterval) {
+				// servers answer with a pong, which refreshes lastRead
+				ws.sendPing();
+				delay = Math.min(delay, Math.min(pingInterval, silenceTimeout - silent));
+			} else {
+				delay = Math.min(delay, pingInterval - silent);
+			}
+		}
+		scheduleKeepAlive(ws, delay);
+	}
+
 	@Override
 	public void onClose(Consumer<EventBus> connectionHandler) {
 		this.onCloseHandler = connectionHandler;
 	}
 
-	private void onMessage(byte[] body) throws IOException {
-		JsonNode json = objectMapper.readTree(body);
+	void onMessage(byte[] body) throws IOException {
+		metrics.frameReceived(body.length);
+		Message message = messageCodec.decode(body);
+		String address = message.getAddress();
+		if (address == null) {
+			if ("err".equals(message.getType()) && "missing_address".equals(message.getBody())) {
+				// cancelled first, since completing runs the dependents of open() before any added here
+				Optional.ofNullable(barrierTask).ifPresent(HashedWheelTimer.Timeout::cancel);
+				registered.complete(null);
+			}
+			return;
+		}
 
-		String address = json.get("address").textValue();
-		Message message = objectMapper.treeToValue(json, Message.class);
+		if (messageHandlers.contains(address)) {
+			if (publishDelivery == LocalDelivery.LOCAL_AND_REMOTE && isEcho(message)) {
+				return;
+			}
+			messageDispatcher.dispatch(message);
+		} else {
+			PendingReply reply = replyHandlers.remove(address);
+			if (reply != null) {
+				reply.cancelTimeout();
+				if (metricsEnabled) {
+					metrics.replyReceived(System.nanoTime() - reply.sentAt);
+				}
+				messageDispatcher.execute(() -> onMessage(reply.handler, reply.errorHandler, message));
+			}
+		}
+	}
 
-		if (messageHandlers.containsKey(address)) {
-			List<Consumer<Message>> handlers = messageHandlers.get(address);
-			handlers.forEach(handler -> onMessage(handler, message));
-		} else if (replyHandlers.containsKey(address)) {
-			Consumer<Message> handler = replyHandlers.get(address);
-			onMessage(handler, message);
-			replyHandlers.remove(address);
-			errorHandlers.remove(handler);
+	private boolean isEcho(Message message) {
+		return message.hasHeaders() && origin.equals(message.getHeaders().get(LocalDelivery.ORIGIN_HEADER));
+	}
+
+	private void deliver(Message message) {
+		if (message.hasHeaders() && message.getHeaders().containsKey(BatchPublisher.BATCH_HEADER)) {
+			BatchPublisher.unbatch(message, this::deliverEach);
+		} else {
+			deliverEach(message);
+		}
+	}
+
+	private void deliverEach(Message message) {
+		for (HandlerRegistry.Registration registration : messageHandlers.match(message.getAddress())) {
+			if (registration.bulkhead != null) {
+				registration.bulkhead.submit(message);
+			} else {
+				handle(registration.handler, registration.errorHandler, message);
+			}
+		}
+	}
+
+	private void handle(Consumer<Message> messageHandler, BiConsumer<Message, Throwable> errorHandler, Message message) {
+		if (metricsEnabled) {
+			long start = System.nanoTime();
+			boolean handled = onMessage(messageHandler, errorHandler, message);
+			metrics.messageHandled(message.getAddress(), System.nanoTime() - start, !handled);
+		} else {
+			onMessage(messageHandler, errorHandler, message);
+		}
+	}
+
+	private void reject(Message message, Throwable cause) {
+		metrics.messageRejected(message.getAddress());
+		for (HandlerRegistry.Registration registration : messageHandlers.match(message.getAddress())) {
+			if (registration.errorHandler != null) {
+				registration.errorHandler.accept(message, cause);
+			}
 		}
 	}
 
-	private void onMessage(Consumer<Message> messageHandler, Message message) {
+	private boolean onMessage(Consumer<Message> messageHandler, BiConsumer<Message, Throwable> errorHandler, Message message) {
 		try {
 			messageHandler.accept(message);
+			return true;
 		} catch (Exception e) {
-			errorHandlers.get(messageHandler).accept(message, e);
+			if (errorHandler != null) {
+				errorHandler.accept(message, e);
+			}
+			return false;
 		}
 	}
 
+	@Override
+	public int getDispatchQueueDepth() {
+		return messageDispatcher.queueDepth();
+	}
+
+	@Override
+	public int getDispatchQueueDepth(String address) {
+		return messageDispatcher.queueDepth(address);
+	}
+
+	@Override
+	public int getPendingReplies() {
+		return replyHandlers.size();
+	}
+
+	/**
+	 * Replies awaited plus frames not yet written to the socket.
+	 */
+	int pendingCount() {
+		return replyHandlers.size() + pendingWrites.size() + (outboundQueue == null ? 0 : outboundQueue.size());
+	}
+
 	@Override
 	public void onOpen(Consumer<EventBus> connectionHandler) {
 		this.onOpenHandler = connectionHandler;
@@ -137,74 +490,261 @@ final class EventBusAdapter implements EventBus {
 
 	@Override
 	public CompletableFuture<EventBus> open() {
-		return CompletableFuture.supplyAsync(this::openSync, connectThreadPool);
+		return CompletableFuture.supplyAsync(this::connect, scheduler.connectExecutor())
+				.thenCompose(processed -> processed.thenApply(v -> this));
 	}
 
 	@Override
 	public EventBus openSync() {
 		try {
-			webSocket.connect();
-			return this;
+			connect().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IllegalStateException ? (IllegalStateException) e.getCause()
+					: new IllegalStateException(e.getCause());
+		}
+		return this;
+	}
+
+	/**
+	 * Connects and registers the handlers added so far.
+	 *
+	 * @return completes once the server has answered the barrier written after the registrations
+	 */
+	private CompletableFuture<Void> connect() {
+		WebSocket ws = webSocket;
+		try {
+			ws.connect();
 		} catch (WebSocketException e) {
 			throw new IllegalStateException(e);
 		}
+		if (!onConnect(ws)) {
+			throw new IllegalStateException("Connection closed while opening");
+		}
+		return registered;
 	}
 
 	@Override
-	public void publish(String address, String message, Map<String, Object> headers) {
+	public void publish(String address, Object message, Map<String, Object> headers) {
 		sendMessage(Message.MessageType.PUBLISH, address, message, headers, null, null);
 	}
 
 	@Override
-	public void registerHandler(String address, Map<String, Object> headers, Consumer<Message> handler, BiConsumer<Message, Throwable> errorHandler) {
-		if (!messageHandlers.containsKey(address)) {
-			messageHandlers.put(address, new ArrayList<>());
-			sendMessage(Message.MessageType.REGISTER, address, null, headers, null, null);
+	public CompletableFuture<Void> publishAsync(String address, Object message, Map<String, Object> headers) {
+		return sendMessageAsync(Message.MessageType.PUBLISH, address, message, headers);
+	}
+
+	@Override
+	public void registerHandler(String address, Map<String, Object> headers, HandlerOptions options,
+								Consumer<Message> handler, BiConsumer<Message, Throwable> errorHandler) {
+		HandlerBulkhead bulkhead = null;
+		if (options != null && options.getExecutor() != null) {
+			bulkhead = new HandlerBulkhead(options, message -> handle(handler, errorHandler, message), (message, cause) -> {
+				metrics.messageRejected(message.getAddress());
+				if (errorHandler != null) {
+					errorHandler.accept(message, cause);
+				}
+			});
 		}
+		messageHandlers.add(address, new HandlerRegistry.Registration(handler, errorHandler, headers, bulkhead),
+				() -> sendRegistration(Message.MessageType.REGISTER, address, headers));
+	}
 
-		messageHandlers.get(address).add(handler);
-		errorHandlers.put(handler, errorHandler);
+	@Override
+	public CompletableFuture<Message> request(String address, Object message, Map<String, Object> headers) {
+		return request(address, message, headers, replyTimeout);
 	}
 
 	@Override
-	public void send(String address, String message, Map<String, Object> headers, Consumer<Message> replyHandler, BiConsumer<Message, Throwable> errorHandler) {
-		sendMessage(Message.MessageType.SEND, address, message, headers, replyHandler, errorHandler);
+	public CompletableFuture<Message> request(String address, Object message, Map<String, Object> headers, long timeout) {
+		CompletableFuture<Message> reply = new CompletableFuture<>();
+		Consumer<Message> replyHandler = m -> {
+			if (m.getFailureCode() != null) {
+				reply.completeExceptionally(new ReplyException(m.getFailureCode(), m.getFailureType(), m.getFailureMessage()));
+			} else {
+				reply.complete(m);
+			}
+		};
+		try {
+			send(address, message, headers, replyHandler, (m, e) -> reply.completeExceptionally(e), timeout);
+		} catch (IllegalStateException e) {
+			reply.completeExceptionally(e);
+		}
+		return reply;
 	}
 
-	private void sendMessage(Message.MessageType type, String address, String message,
-							 Map<String, Object> headers, Consumer<Message> replyHandler, BiConsumer<Message, Throwable> errorHandler) {
-		if (state != OPEN) {
+	@Override
+	public void send(String address, Object message, Map<String, Object> headers, Consumer<Message> replyHandler, BiConsumer<Message, Throwable> errorHandler) {
+		send(address, message, headers, replyHandler, errorHandler, replyTimeout);
+	}
+
+	private void send(String address, Object message, Map<String, Object> headers,
+					  Consumer<Message> replyHandler, BiConsumer<Message, Throwable> errorHandler, long timeout) {
+		if (replyHandler == null) {
+			sendMessage(Message.MessageType.SEND, address, message, headers, null, null);
+			return;
+		}
+
+		PendingReply reply = new PendingReply(replyHandler, errorHandler);
+		if (metricsEnabled) {
+			reply.sentAt = System.nanoTime();
+		}
+		long replyId;
+		try {
+			replyId = replyHandlers.put(reply);
+		} catch (IllegalStateException e) {
+			metrics.replyRejected();
+			throw e;
+		}
+		metrics.replyRegistered();
+		try {
+			if (timeout > 0) {
+				reply.timeout = scheduler.schedule(() -> onReplyTimeout(replyId, timeout), timeoutExecutor, timeout,
+						TimeUnit.MILLISECONDS);
+			}
+			sendMessage(Message.MessageType.SEND, address, message, headers, replyHandlers.address(replyId), null);
+		} catch (RuntimeException e) {
+			replyHandlers.remove(replyId);
+			metrics.replyFailed();
+			reply.cancelTimeout();
+			throw e;
+		}
+	}
+
+	private void onReplyTimeout(long replyId, long timeout) {
+		PendingReply reply = replyHandlers.remove(replyId);
+		if (reply != null) {
+			metrics.replyFailed();
+			reply.fail(new TimeoutException("No reply received within " + timeout + "ms"));
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> sendAsync(String address, Object message, Map<String, Object> headers) {
+		return sendMessageAsync(Message.MessageType.SEND, address, message, headers);
+	}
+
+	private CompletableFuture<Void> sendMessageAsync(Message.MessageType type, String address, Object message, Map<String, Object> headers) {
+		CompletableFuture<Void> written = new CompletableFuture<>();
+		try {
+			sendMessage(type, address, message, headers, null, written);
+		} catch (IllegalStateException e) {
+			written.completeExceptionally(e);
+		}
+		return written;
+	}
+
+	private void sendMessage(Message.MessageType type, String address, Object message, Map<String, Object> headers,
+							 String replyAddress, CompletableFuture<Void> written) {
+		if (state != OPEN && (state != RECONNECTING || reconnectBufferCapacity == 0)) {
 			throw new IllegalStateException("Connection is not currently open");
 		}
 
-		Message msg;
-		if (Message.MessageType.SEND.equals(type) && replyHandler != null) {
-			String replyAddress = UUID.randomUUID().toString();
-			msg = new Message(Message.MessageType.SEND, address, headers, message, replyAddress);
-			replyHandlers.put(replyAddress, replyHandler);
-			if (errorHandler != null) {
-				errorHandlers.put(replyHandler, errorHandler);
+		LocalDelivery delivery = type == Message.MessageType.PUBLISH ? publishDelivery
+				: type == Message.MessageType.SEND && replyAddress == null ? sendDelivery : LocalDelivery.REMOTE;
+		if (delivery != LocalDelivery.REMOTE && messageHandlers.contains(address)) {
+			messageDispatcher.dispatch(new LocalMessage(address, headers, message, objectMapper));
+			if (delivery == LocalDelivery.LOCAL) {
+				if (written != null) {
+					written.complete(null);
+				}
+				return;
 			}
-		} else {
-			msg = new Message(type, address, headers, message);
+			headers = Headers.copyOf(headers).with(LocalDelivery.ORIGIN_HEADER, origin);
 		}
 
+		OutboundQueue.OutboundFrame frame = encode(type, address, message, headers, replyAddress, written);
+		if (state != OPEN && buffer(frame)) {
+			return;
+		}
+		write(frame);
+	}
+
+	private void sendRegistration(Message.MessageType type, String address, Map<String, Object> headers) {
+		if (state != OPEN) {
+			synchronized (reconnectBuffer) {
+				// the registry is not yet updated, so the address is remembered for the next connect to register it
+				if (state == CONNECTING || state == RECONNECTING) {
+					if (type == Message.MessageType.REGISTER) {
+						deferredRegistrations.put(address, headers);
+					} else {
+						deferredRegistrations.remove(address);
+					}
+					return;
+				}
+			}
+		}
+		sendMessage(type, address, null, headers, null, null);
+	}
+
+	private OutboundQueue.OutboundFrame encode(Message.MessageType type, String address, Object message, Map<String, Object> headers,
+											   String replyAddress, CompletableFuture<Void> written) {
+		byte[] frame;
 		try {
-			webSocket.sendBinary(objectMapper.writeValueAsBytes(msg));
-		} catch (JsonProcessingException e) {
+			frame = messageCodec.encode(type, address, headers, message, replyAddress);
+		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
+		metrics.frameSent(frame.length);
+		return new OutboundQueue.OutboundFrame(WebSocketFrame.createBinaryFrame(frame), written);
+	}
+
+	private boolean buffer(OutboundQueue.OutboundFrame frame) {
+		synchronized (reconnectBuffer) {
+			if (state == OPEN) {
+				return false;
+			}
+			if (state != RECONNECTING) {
+				throw new IllegalStateException("Connection is not currently open");
+			}
+			if (reconnectBuffer.size() >= reconnectBufferCapacity) {
+				throw new IllegalStateException("Reconnect buffer is full");
+			}
+			reconnectBuffer.add(frame);
+			return true;
+		}
+	}
+
+	private void write(OutboundQueue.OutboundFrame frame) {
+		if (outboundQueue != null) {
+			outboundQueue.offer(frame);
+		} else {
+			writeFrame(frame);
+		}
+	}
+
+	private void writeFrame(OutboundQueue.OutboundFrame frame) {
+		if (frame.written != null) {
+			pendingWrites.put(frame.frame, frame.written);
+		}
+		WebSocketFrame webSocketFrame = frame.frame;
+		if (deflate && !webSocketFrame.getRsv1() && webSocketFrame.getPayloadLength() < compressionThreshold) {
+			webSocketFrame.setPayload(DeflateBlocks.stored(webSocketFrame.getPayload())).setRsv1(true);
+		}
+		webSocket.sendFrame(webSocketFrame);
+	}
+
+	@Override
+	public Publisher<Message> subscribe(String address) {
+		return subscribe(address, subscriptionBufferSize, subscriptionOverflowPolicy);
 	}
 
 	@Override
 	public void unregisterHandler(String address, Map<String, Object> headers, Consumer<Message> handler) {
-		List<Consumer<Message>> handlers = messageHandlers.get(address);
-		if (handlers == null || handlers.isEmpty()) {
-			return;
+		boolean[] last = new boolean[1];
+		HandlerRegistry.Registration removed = messageHandlers.remove(address, handler, () -> {
+			sendRegistration(Message.MessageType.UNREGISTER, address, headers);
+			messageDispatcher.remove(address);
+			last[0] = true;
+		});
+		if (last[0] && AddressTrie.isPattern(address)) {
+			// mailboxes are kept per concrete address, which only the pattern led to
+			messageDispatcher.retain(messageHandlers::contains);
+		}
+		if (removed != null && removed.bulkhead != null) {
+			removed.bulkhead.close();
 		}
-
-		sendMessage(Message.MessageType.UNREGISTER, address, null, headers, null, null);
-		handlers.remove(handler);
-		errorHandlers.remove(handler);
 	}
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+/**
+ * Instrumentation callbacks of an {@link EventBus} connection, called on the sending, receiving and dispatching
+ * threads. Implementations must be thread safe and cheap; every method defaults to doing nothing. Durations are
+ * only measured when metrics other than {@link #NOOP} are configured.
+ *
+ * @see DefaultEventBusMetrics
+ */
+public interface EventBusMetrics {
+	EventBusMetrics NOOP = new EventBusMetrics() {
+	};
+
+	default void connectionOpened() {
+	}
+
+	default void connectionClosed() {
+	}
+
+	default void reconnectAttempted() {
+	}
+
+	default void frameSent(int bytes) {
+	}
+
+	default void frameReceived(int bytes) {
+	}
+
+	default void messageHandled(String address, long durationNanos, boolean failed) {
+	}
+
+	default void messageRejected(String address) {
+	}
+
+	default void replyRegistered() {
+	}
+
+	default void replyRejected() {
+	}
+
+	default void replyReceived(long roundTripNanos) {
+	}
+
+	default void replyFailed() {
+	}
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+public class EventBusOptions {
+	private MessageCodec codec;
+	private boolean compression;
+	private int compressionThreshold = 1024;
+	private int connections = 1;
+	private LoadBalancing loadBalancing = LoadBalancing.ROUND_ROBIN;
+	private int pingInterval = 5000;
+	private LocalDelivery publishDelivery = LocalDelivery.REMOTE;
+	private LocalDelivery sendDelivery = LocalDelivery.REMOTE;
+	private boolean reconnect;
+	private long reconnectInitialDelay = 100;
+	private long reconnectMaxDelay = 30000;
+	private int reconnectAttempts;
+	private int reconnectBufferCapacity;
+	private long replyTimeout = 30000;
+	private Executor dispatchExecutor;
+	private boolean dispatchOnVirtualThreads;
+	private boolean orderedDispatch = true;
+	private EventBusMetrics metrics = EventBusMetrics.NOOP;
+	private EventBusScheduler scheduler;
+	private int mailboxCapacity = 1024;
+	private OverflowPolicy mailboxOverflowPolicy = OverflowPolicy.BLOCK;
+	private int maxPendingReplies;
+	private int subscriptionBufferSize = 256;
+	private OverflowPolicy subscriptionOverflowPolicy = OverflowPolicy.BLOCK;
+	private int sendQueueCapacity;
+	private long silenceTimeout;
+	private OverflowPolicy sendQueueOverflowPolicy = OverflowPolicy.BLOCK;
+	private int flushBatchSize = 64;
+	private long flushIntervalMicros = 0;
+
+	public MessageCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Wire format of frames. Without one (the default) frames are JSON written and read by the object mapper given
+	 * to {@link EventBus#newInstance(com.neovisionaries.ws.client.WebSocket, com.fasterxml.jackson.databind.ObjectMapper,
+	 * EventBusOptions)}.
+	 */
+	public EventBusOptions setCodec(MessageCodec codec) {
+		this.codec = codec;
+		return this;
+	}
+
+	public boolean isCompression() {
+		return compression;
+	}
+
+	/**
+	 * Offer permessage-deflate when connecting. If the server agrees, inbound messages may arrive compressed and
+	 * outbound frames of at least {@link #getCompressionThreshold()} bytes are deflated.
+	 */
+	public EventBusOptions setCompression(boolean compression) {
+		this.compression = compression;
+		return this;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * Size in bytes from which outbound frames are deflated when compression is agreed. Smaller frames are sent in
+	 * uncompressed blocks, which costs six bytes and a copy instead of a deflater.
+	 */
+	public EventBusOptions setCompressionThreshold(int compressionThreshold) {
+		if (compressionThreshold < 0) {
+			throw new IllegalArgumentException("compressionThreshold must not be negative");
+		}
+		this.compressionThreshold = compressionThreshold;
+		return this;
+	}
+
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * Number of WebSocket connections behind one event bus. With more than one, sends and publishes are spread
+	 * across the connections by {@link #getLoadBalancing()}, so their order is only kept within a connection, and
+	 * the handlers of an address all live on the connection picked by the address hash.
+	 */
+	public EventBusOptions setConnections(int connections) {
+		if (connections < 1) {
+			throw new IllegalArgumentException("connections must be positive");
+		}
+		this.connections = connections;
+		return this;
+	}
+
+	public Executor getDispatchExecutor() {
+		return dispatchExecutor;
+	}
+
+	/**
+	 * Executor that runs message handlers. Without one (the default) handlers run on the socket reading thread.
+	 */
+	public EventBusOptions setDispatchExecutor(Executor dispatchExecutor) {
+		this.dispatchExecutor = dispatchExecutor;
+		return this;
+	}
+
+	public boolean isDispatchOnVirtualThreads() {
+		return dispatchOnVirtualThreads;
+	}
+
+	/**
+	 * Run message handlers on virtual threads when the JVM supports them, or on the common fork join pool otherwise.
+	 * Ignored when a dispatch executor is set.
+	 */
+	public EventBusOptions setDispatchOnVirtualThreads(boolean dispatchOnVirtualThreads) {
+		this.dispatchOnVirtualThreads = dispatchOnVirtualThreads;
+		return this;
+	}
+
+	public int getFlushBatchSize() {
+		return flushBatchSize;
+	}
+
+	/**
+	 * Maximum number of queued frames written before the socket is flushed. Only used when the send queue is enabled.
+	 */
+	public EventBusOptions setFlushBatchSize(int flushBatchSize) {
+		if (flushBatchSize < 1) {
+			throw new IllegalArgumentException("flushBatchSize must be positive");
+		}
+		this.flushBatchSize = flushBatchSize;
+		return this;
+	}
+
+	public long getFlushIntervalMicros() {
+		return flushIntervalMicros;
+	}
+
+	/**
+	 * How long the writer waits for more frames before flushing a batch smaller than {@link #getFlushBatchSize()}.
+	 * Zero flushes as soon as the send queue is empty. Only used when the send queue is enabled.
+	 */
+	public EventBusOptions setFlushIntervalMicros(long flushIntervalMicros) {
+		if (flushIntervalMicros < 0) {
+			throw new IllegalArgumentException("flushIntervalMicros must not be negative");
+		}
+		this.flushIntervalMicros = flushIntervalMicros;
+		return this;
+	}
+
+	public LoadBalancing getLoadBalancing() {
+		return loadBalancing;
+	}
+
+	public EventBusOptions setLoadBalancing(LoadBalancing loadBalancing) {
+		this.loadBalancing = Objects.requireNonNull(loadBalancing);
+		return this;
+	}
+
+	public int getMailboxCapacity() {
+		return mailboxCapacity;
+	}
+
+	/**
+	 * Maximum number of messages waiting to be handled per address when dispatch is ordered.
+	 */
+	public EventBusOptions setMailboxCapacity(int mailboxCapacity) {
+		if (mailboxCapacity < 1) {
+			throw new IllegalArgumentException("mailboxCapacity must be positive");
+		}
+		this.mailboxCapacity = mailboxCapacity;
+		return this;
+	}
+
+	public OverflowPolicy getMailboxOverflowPolicy() {
+		return mailboxOverflowPolicy;
+	}
+
+	/**
+	 * What to do with an inbound message when its address mailbox is full. Dropped and rejected messages are
+	 * reported to the error handlers registered for the address.
+	 */
+	public EventBusOptions setMailboxOverflowPolicy(OverflowPolicy mailboxOverflowPolicy) {
+		this.mailboxOverflowPolicy = Objects.requireNonNull(mailboxOverflowPolicy);
+		return this;
+	}
+
+	public int getMaxPendingReplies() {
+		return maxPendingReplies;
+	}
+
+	/**
+	 * Maximum number of requests per connection awaiting a reply. Beyond it requests fail right away with an
+	 * {@link IllegalStateException}. Zero (the default) leaves them unbounded; a limit also sizes the reply table up
+	 * front for that many requests, so it does not grow while they are in flight.
+	 */
+	public EventBusOptions setMaxPendingReplies(int maxPendingReplies) {
+		if (maxPendingReplies < 0) {
+			throw new IllegalArgumentException("maxPendingReplies must not be negative");
+		}
+		this.maxPendingReplies = maxPendingReplies;
+		return this;
+	}
+
+	public EventBusMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Instrumentation called on the send, receive, dispatch and reply paths. Defaults to {@link EventBusMetrics#NOOP}.
+	 */
+	public EventBusOptions setMetrics(EventBusMetrics metrics) {
+		this.metrics = Objects.requireNonNull(metrics);
+		return this;
+	}
+
+	public boolean isOrderedDispatch() {
+		return orderedDispatch;
+	}
+
+	/**
+	 * Deliver messages of the same address one at a time and in arrival order (the default). Messages of different
+	 * addresses are still handled in parallel. Only used with a dispatch executor.
+	 */
+	public EventBusOptions setOrderedDispatch(boolean orderedDispatch) {
+		this.orderedDispatch = orderedDispatch;
+		return this;
+	}
+
+	public int getPingInterval() {
+		return pingInterval;
+	}
+
+	/**
+	 * Milliseconds between the pings that keep the bridge session alive. Pings go out every interval regardless of
+	 * other traffic, because the bridge only counts pings towards its session timeout.
+	 */
+	public EventBusOptions setPingInterval(int pingInterval) {
+		if (pingInterval < 1) {
+			throw new IllegalArgumentException("pingInterval must be positive");
+		}
+		this.pingInterval = pingInterval;
+		return this;
+	}
+
+	public LocalDelivery getPublishDelivery() {
+		return publishDelivery;
+	}
+
+	/**
+	 * How messages published to an address with handlers on the same connection are delivered. Defaults to
+	 * {@link LocalDelivery#REMOTE}.
+	 */
+	public EventBusOptions setPublishDelivery(LocalDelivery publishDelivery) {
+		this.publishDelivery = Objects.requireNonNull(publishDelivery);
+		return this;
+	}
+
+	public boolean isReconnect() {
+		return reconnect;
+	}
+
+	/**
+	 * Reconnect with jittered exponential backoff when an open connection drops, registering every handled address
+	 * again once the connection is back. The close and open handlers are called for every drop and reconnect.
+	 */
+	public EventBusOptions setReconnect(boolean reconnect) {
+		this.reconnect = reconnect;
+		return this;
+	}
+
+	public int getReconnectAttempts() {
+		return reconnectAttempts;
+	}
+
+	/**
+	 * Maximum number of consecutive reconnect attempts before the connection is given up. Zero (the default)
+	 * retries forever.
+	 */
+	public EventBusOptions setReconnectAttempts(int reconnectAttempts) {
+		if (reconnectAttempts < 0) {
+			throw new IllegalArgumentException("reconnectAttempts must not be negative");
+		}
+		this.reconnectAttempts = reconnectAttempts;
+		return this;
+	}
+
+	public int getReconnectBufferCapacity() {
+		return reconnectBufferCapacity;
+	}
+
+	/**
+	 * Number of outbound messages kept while reconnecting and written once the connection is back. Zero (the default)
+	 * fails sends while the connection is down.
+	 */
+	public EventBusOptions setReconnectBufferCapacity(int reconnectBufferCapacity) {
+		if (reconnectBufferCapacity < 0) {
+			throw new IllegalArgumentException("reconnectBufferCapacity must not be negative");
+		}
+		this.reconnectBufferCapacity = reconnectBufferCapacity;
+		return this;
+	}
+
+	public long getReconnectInitialDelay() {
+		return reconnectInitialDelay;
+	}
+
+	/**
+	 * Milliseconds before the first reconnect attempt. The delay doubles with every failed attempt up to
+	 * {@link #getReconnectMaxDelay()}, and each attempt waits a random time between half and all of it.
+	 */
+	public EventBusOptions setReconnectInitialDelay(long reconnectInitialDelay) {
+		if (reconnectInitialDelay < 1) {
+			throw new IllegalArgumentException("reconnectInitialDelay must be positive");
+		}
+		this.reconnectInitialDelay = reconnectInitialDelay;
+		return this;
+	}
+
+	public long getReconnectMaxDelay() {
+		return reconnectMaxDelay;
+	}
+
+	public EventBusOptions setReconnectMaxDelay(long reconnectMaxDelay) {
+		if (reconnectMaxDelay < 1) {
+			throw new IllegalArgumentException("reconnectMaxDelay must be positive");
+		}
+		this.reconnectMaxDelay = reconnectMaxDelay;
+		return this;
+	}
+
+	public long getReplyTimeout() {
+		return replyTimeout;
+	}
+
+	/**
+	 * Milliseconds to wait for a reply before the error handler of a send is called with a
+	 * {@link java.util.concurrent.TimeoutException}. Zero waits forever.
+	 */
+	public EventBusOptions setReplyTimeout(long replyTimeout) {
+		if (replyTimeout < 0) {
+			throw new IllegalArgumentException("replyTimeout must not be negative");
+		}
+		this.replyTimeout = replyTimeout;
+		return this;
+	}
+
+	public EventBusScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Timer and connect threads to use instead of {@link EventBusScheduler#shared()}.
+	 */
+	public EventBusOptions setScheduler(EventBusScheduler scheduler) {
+		this.scheduler = scheduler;
+		return this;
+	}
+
+	public LocalDelivery getSendDelivery() {
+		return sendDelivery;
+	}
+
+	/**
+	 * How messages sent to an address with handlers on the same connection are delivered. Requests expecting a
+	 * reply always go through the server. Defaults to {@link LocalDelivery#REMOTE}; a point-to-point message cannot
+	 * be delivered both locally and remotely.
+	 */
+	public EventBusOptions setSendDelivery(LocalDelivery sendDelivery) {
+		if (Objects.requireNonNull(sendDelivery) == LocalDelivery.LOCAL_AND_REMOTE) {
+			throw new IllegalArgumentException("sendDelivery must not be LOCAL_AND_REMOTE");
+		}
+		this.sendDelivery = sendDelivery;
+		return this;
+	}
+
+	public int getSendQueueCapacity() {
+		return sendQueueCapacity;
+	}
+
+	/**
+	 * Capacity of the outbound send queue. Zero (the default) disables the queue and writes every frame
+	 * to the socket on the caller's thread.
+	 */
+	public EventBusOptions setSendQueueCapacity(int sendQueueCapacity) {
+		if (sendQueueCapacity < 0) {
+			throw new IllegalArgumentException("sendQueueCapacity must not be negative");
+		}
+		this.sendQueueCapacity = sendQueueCapacity;
+		return this;
+	}
+
+	public OverflowPolicy getSendQueueOverflowPolicy() {
+		return sendQueueOverflowPolicy;
+	}
+
+	public EventBusOptions setSendQueueOverflowPolicy(OverflowPolicy sendQueueOverflowPolicy) {
+		this.sendQueueOverflowPolicy = Objects.requireNonNull(sendQueueOverflowPolicy);
+		return this;
+	}
+
+	public long getSilenceTimeout() {
+		return silenceTimeout;
+	}
+
+	/**
+	 * Milliseconds without any inbound frame after which the connection is considered dead and closed, or
+	 * reconnected when {@link #isReconnect()} is set. A quiet server is probed with WebSocket pings every ping
+	 * interval, so the timeout should span a few of them. Zero (the default) never closes a silent connection.
+	 */
+	public EventBusOptions setSilenceTimeout(long silenceTimeout) {
+		if (silenceTimeout < 0) {
+			throw new IllegalArgumentException("silenceTimeout must not be negative");
+		}
+		this.silenceTimeout = silenceTimeout;
+		return this;
+	}
+
+	public int getSubscriptionBufferSize() {
+		return subscriptionBufferSize;
+	}
+
+	/**
+	 * Number of messages a subscriber of {@link EventBus#subscribe(String)} can fall behind before the overflow
+	 * policy applies. {@link OverflowPolicy#BLOCK} holds up dispatch, and with it the socket, until the subscriber
+	 * requests more; {@link OverflowPolicy#FAIL_FAST} ends the subscription with an error.
+	 */
+	public EventBusOptions setSubscriptionBufferSize(int subscriptionBufferSize) {
+		if (subscriptionBufferSize < 1) {
+			throw new IllegalArgumentException("subscriptionBufferSize must be positive");
+		}
+		this.subscriptionBufferSize = subscriptionBufferSize;
+		return this;
+	}
+
+	public OverflowPolicy getSubscriptionOverflowPolicy() {
+		return subscriptionOverflowPolicy;
+	}
+
+	public EventBusOptions setSubscriptionOverflowPolicy(OverflowPolicy subscriptionOverflowPolicy) {
+		this.subscriptionOverflowPolicy = Objects.requireNonNull(subscriptionOverflowPolicy);
+		return this;
+	}
+}
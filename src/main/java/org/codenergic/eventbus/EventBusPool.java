@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.reactivestreams.Publisher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.ws.client.WebSocket;
+
+/**
+ * Event bus spread over several connections, each with its own reader thread, so inbound decoding scales past
+ * one core. Handlers of an address are placed on one connection by the address hash; sends and publishes are
+ * balanced across all of them, except that those delivered locally go to the connection holding the handlers of
+ * their address.
+ */
+final class EventBusPool implements EventBus {
+	private final EventBusAdapter[] connections;
+	private final LoadBalancing loadBalancing;
+	private final int subscriptionBufferSize;
+	private final OverflowPolicy subscriptionOverflowPolicy;
+	private final LocalDelivery publishDelivery;
+	private final LocalDelivery sendDelivery;
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicInteger openConnections = new AtomicInteger();
+	private Consumer<EventBus> onOpenHandler;
+	private Consumer<EventBus> onCloseHandler;
+
+	EventBusPool(WebSocket webSocket, ObjectMapper objectMapper, EventBusOptions options) {
+		this.connections = new EventBusAdapter[options.getConnections()];
+		this.loadBalancing = options.getLoadBalancing();
+		this.subscriptionBufferSize = options.getSubscriptionBufferSize();
+		this.subscriptionOverflowPolicy = options.getSubscriptionOverflowPolicy();
+		this.publishDelivery = options.getPublishDelivery();
+		this.sendDelivery = options.getSendDelivery();
+		// recreate() copies the listeners, so every socket is recreated before a connection adds its own to the first
+		WebSocket[] webSockets = new WebSocket[connections.length];
+		webSockets[0] = webSocket;
+		for (int i = 1; i < webSockets.length; i++) {
+			webSockets[i] = recreate(webSocket);
+		}
+		for (int i = 0; i < connections.length; i++) {
+			EventBusAdapter connection = new EventBusAdapter(webSockets[i], objectMapper, options);
+			// the pool counts as open while every connection is
+			connection.onOpen(eb -> {
+				if (openConnections.incrementAndGet() == connections.length) {
+					Optional.ofNullable(onOpenHandler).ifPresent(h -> h.accept(this));
+				}
+			});
+			connection.onClose(eb -> {
+				if (openConnections.getAndDecrement() == connections.length) {
+					Optional.ofNullable(onCloseHandler).ifPresent(h -> h.accept(this));
+				}
+			});
+			connections[i] = connection;
+		}
+	}
+
+	private static WebSocket recreate(WebSocket webSocket) {
+		try {
+			return webSocket.recreate();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private EventBusAdapter connectionOf(String address) {
+		return connections[Math.floorMod(address.hashCode(), connections.length)];
+	}
+
+	/**
+	 * The connection holding the handlers of the address when messages to it may be delivered locally, since only
+	 * that connection knows them, or the next balanced one otherwise.
+	 */
+	private EventBusAdapter connectionFor(String address, LocalDelivery delivery) {
+		return delivery == LocalDelivery.REMOTE ? nextConnection() : connectionOf(address);
+	}
+
+	private EventBusAdapter nextConnection() {
+		if (loadBalancing == LoadBalancing.LEAST_PENDING) {
+			EventBusAdapter least = connections[0];
+			int leastPending = least.pendingCount();
+			for (int i = 1; i < connections.length && leastPending > 0; i++) {
+				int pending = connections[i].pendingCount();
+				if (pending < leastPending) {
+					least = connections[i];
+					leastPending = pending;
+				}
+			}
+			return least;
+		}
+		return connections[Math.floorMod(next.getAndIncrement(), connections.length)];
+	}
+
+	@Override
+	public void close() {
+		for (EventBusAdapter connection : connections) {
+			connection.close();
+		}
+	}
+
+	@Override
+	public int getDispatchQueueDepth() {
+		int depth = 0;
+		for (EventBusAdapter connection : connections) {
+			depth += connection.getDispatchQueueDepth();
+		}
+		return depth;
+	}
+
+	@Override
+	public int getDispatchQueueDepth(String address) {
+		return connectionOf(address).getDispatchQueueDepth(address);
+	}
+
+	@Override
+	public int getPendingReplies() {
+		int pending = 0;
+		for (EventBusAdapter connection : connections) {
+			pending += connection.getPendingReplies();
+		}
+		return pending;
+	}
+
+	@Override
+	public void onClose(Consumer<EventBus> connectionHandler) {
+		this.onCloseHandler = connectionHandler;
+	}
+
+	@Override
+	public void onOpen(Consumer<EventBus> connectionHandler) {
+		this.onOpenHandler = connectionHandler;
+	}
+
+	@Override
+	public CompletableFuture<EventBus> open() {
+		CompletableFuture<?>[] opened = new CompletableFuture<?>[connections.length];
+		for (int i = 0; i < connections.length; i++) {
+			opened[i] = connections[i].open();
+		}
+		return CompletableFuture.allOf(opened).thenApply(v -> this);
+	}
+
+	@Override
+	public EventBus openSync() {
+		try {
+			open().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IllegalStateException ? (IllegalStateException) e.getCause()
+					: new IllegalStateException(e.getCause());
+		}
+		return this;
+	}
+
+	@Override
+	public void publish(String address, Object message, Map<String, Object> headers) {
+		connectionFor(address, publishDelivery).publish(address, message, headers);
+	}
+
+	@Override
+	public CompletableFuture<Void> publishAsync(String address, Object message, Map<String, Object> headers) {
+		return connectionFor(address, publishDelivery).publishAsync(address, message, headers);
+	}
+
+	@Override
+	public void registerHandler(String address, Map<String, Object> headers, HandlerOptions options,
+								Consumer<Message> handler, BiConsumer<Message, Throwable> errorHandler) {
+		connectionOf(address).registerHandler(address, headers, options, handler, errorHandler);
+	}
+
+	@Override
+	public CompletableFuture<Message> request(String address, Object message, Map<String, Object> headers) {
+		return nextConnection().request(address, message, headers);
+	}
+
+	@Override
+	public CompletableFuture<Message> request(String address, Object message, Map<String, Object> headers, long timeout) {
+		return nextConnection().request(address, message, headers, timeout);
+	}
+
+	@Override
+	public void send(String address, Object message, Map<String, Object> headers, Consumer<Message> replyHandler, BiConsumer<Message, Throwable> errorHandler) {
+		// requests expecting a reply always go through the server
+		EventBusAdapter connection = replyHandler == null ? connectionFor(address, sendDelivery) : nextConnection();
+		connection.send(address, message, headers, replyHandler, errorHandler);
+	}
+
+	@Override
+	public CompletableFuture<Void> sendAsync(String address, Object message, Map<String, Object> headers) {
+		return connectionFor(address, sendDelivery).sendAsync(address, message, headers);
+	}
+
+	@Override
+	public Publisher<Message> subscribe(String address) {
+		return subscribe(address, subscriptionBufferSize, subscriptionOverflowPolicy);
+	}
+
+	@Override
+	public void unregisterHandler(String address, Map<String, Object> headers, Consumer<Message> handler) {
+		connectionOf(address).unregisterHandler(address, headers, handler);
+	}
+}
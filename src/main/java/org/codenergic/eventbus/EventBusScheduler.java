@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer, connect and callback threads shared by event bus instances. The timer drives pings, reply timeouts and
+ * reconnect backoff on one daemon thread, which only fires them. Blocking connects run on the connect executor, and
+ * what a timeout hands to user code, such as failing a timed out request, runs on a small fixed pool of callback
+ * threads unless the event bus dispatches on an executor of its own, so that a burst of timeouts cannot start a
+ * thread each. Idle threads of both exit after a minute. Event buses use {@link #shared()} unless
+ * {@link EventBusOptions#setScheduler(EventBusScheduler)} injects another one, which must be closed once its event
+ * buses are.
+ */
+public final class EventBusScheduler implements AutoCloseable {
+	private static final AtomicInteger SCHEDULERS = new AtomicInteger();
+	private static final int CALLBACK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private static volatile EventBusScheduler shared;
+
+	private final HashedWheelTimer timer;
+	private final Executor connectExecutor;
+	private final boolean ownsConnectExecutor;
+	private final ThreadPoolExecutor callbackExecutor;
+	private final boolean isShared;
+
+	public EventBusScheduler() {
+		this(10, TimeUnit.MILLISECONDS, false);
+	}
+
+	/**
+	 * @param tickDuration accuracy of timeouts
+	 * @param connectOnVirtualThreads connect on virtual threads when the JVM supports them
+	 */
+	public EventBusScheduler(long tickDuration, TimeUnit unit, boolean connectOnVirtualThreads) {
+		this(tickDuration, unit, newConnectExecutor(connectOnVirtualThreads), true, false);
+	}
+
+	public EventBusScheduler(long tickDuration, TimeUnit unit, Executor connectExecutor) {
+		this(tickDuration, unit, Objects.requireNonNull(connectExecutor), false, false);
+	}
+
+	private EventBusScheduler(long tickDuration, TimeUnit unit, Executor connectExecutor, boolean ownsConnectExecutor,
+							  boolean isShared) {
+		if (tickDuration < 1) {
+			throw new IllegalArgumentException("tickDuration must be positive");
+		}
+		int id = SCHEDULERS.incrementAndGet();
+		this.timer = new HashedWheelTimer("eventbus-timer-" + id, tickDuration, unit, 512);
+		this.connectExecutor = connectExecutor;
+		AtomicInteger threads = new AtomicInteger();
+		this.callbackExecutor = new ThreadPoolExecutor(CALLBACK_THREADS, CALLBACK_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), task -> {
+			Thread thread = new Thread(task, "eventbus-callback-" + id + "-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.callbackExecutor.allowCoreThreadTimeOut(true);
+		this.ownsConnectExecutor = ownsConnectExecutor;
+		this.isShared = isShared;
+	}
+
+	/**
+	 * The scheduler of event buses created without one. It lives as long as the JVM and cannot be closed; its
+	 * threads are daemon threads.
+	 */
+	public static EventBusScheduler shared() {
+		EventBusScheduler scheduler = shared;
+		if (scheduler == null) {
+			synchronized (EventBusScheduler.class) {
+				scheduler = shared;
+				if (scheduler == null) {
+					scheduler = new EventBusScheduler(10, TimeUnit.MILLISECONDS, newConnectExecutor(false), true, true);
+					shared = scheduler;
+				}
+			}
+		}
+		return scheduler;
+	}
+
+	private static Executor newConnectExecutor(boolean virtualThreads) {
+		if (virtualThreads) {
+			Executor executor = MessageDispatcher.newVirtualThreadExecutor();
+			// without virtual threads the common pool comes back, which must not run blocking connects
+			if (!(executor instanceof ForkJoinPool)) {
+				return executor;
+			}
+		}
+		AtomicInteger threads = new AtomicInteger();
+		return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), task -> {
+			Thread thread = new Thread(task, "eventbus-connect-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Stops the timer, the callback threads and, unless it was passed in, the connect executor.
+	 */
+	@Override
+	public void close() {
+		if (isShared) {
+			throw new IllegalStateException("The shared scheduler cannot be closed");
+		}
+		timer.stop();
+		callbackExecutor.shutdown();
+		if (ownsConnectExecutor && connectExecutor instanceof ExecutorService) {
+			((ExecutorService) connectExecutor).shutdown();
+		}
+	}
+
+	Executor connectExecutor() {
+		return connectExecutor;
+	}
+
+	/**
+	 * Runs what timeouts hand to user code, on a bounded number of threads.
+	 */
+	Executor callbackExecutor() {
+		return callbackExecutor;
+	}
+
+	HashedWheelTimer.Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		return timer.schedule(task, delay, unit);
+	}
+
+	/**
+	 * Schedules a task that runs on {@code executor} once due, so that it cannot hold up the other timeouts.
+	 */
+	HashedWheelTimer.Timeout schedule(Runnable task, Executor executor, long delay, TimeUnit unit) {
+		return timer.schedule(() -> executor.execute(task), delay, unit);
+	}
+
+	/**
+	 * Number of scheduled tasks that are neither due nor cancelled.
+	 */
+	int scheduledTasks() {
+		return timer.liveTimeouts();
+	}
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads the fields of a {@link LazyMessage} from its frame once they are first asked for.
+ */
+interface FrameScanner {
+	void scan(LazyMessage message, byte[] frame) throws IOException;
+
+	Map<String, Object> decodeHeaders(byte[] frame, int offset, int length) throws IOException;
+}
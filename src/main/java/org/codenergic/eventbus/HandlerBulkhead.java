@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of one handler, drained on its executor by up to {@code maxConcurrency} workers. A worker handles
+ * a batch of messages and then hands the executor back, so a busy handler does not hog a shared pool.
+ */
+final class HandlerBulkhead {
+	private static final int WORKER_BATCH_SIZE = 64;
+	private static final long BLOCK_PARK_NANOS = 50_000;
+
+	private final Executor executor;
+	private final int maxConcurrency;
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final Consumer<Message> handler;
+	private final BiConsumer<Message, Throwable> rejectionHandler;
+	private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger workers = new AtomicInteger();
+	private volatile boolean closed;
+
+	HandlerBulkhead(HandlerOptions options, Consumer<Message> handler, BiConsumer<Message, Throwable> rejectionHandler) {
+		this.executor = options.getExecutor();
+		this.maxConcurrency = options.getMaxConcurrency();
+		this.queueCapacity = options.getQueueCapacity();
+		this.overflowPolicy = options.getOverflowPolicy();
+		this.handler = handler;
+		this.rejectionHandler = rejectionHandler;
+	}
+
+	void submit(Message message) {
+		if (closed || !reserve(message)) {
+			return;
+		}
+		queue.add(message);
+		startWorker();
+	}
+
+	private boolean reserve(Message message) {
+		while (true) {
+			int current = size.get();
+			if (current < queueCapacity) {
+				if (size.compareAndSet(current, current + 1)) {
+					return true;
+				}
+				continue;
+			}
+			switch (overflowPolicy) {
+				case BLOCK:
+					if (closed) {
+						return false;
+					}
+					LockSupport.parkNanos(BLOCK_PARK_NANOS);
+					break;
+				case DROP_OLDEST:
+					Message dropped = queue.poll();
+					if (dropped != null) {
+						size.decrementAndGet();
+						rejectionHandler.accept(dropped, new IllegalStateException("Message dropped from full handler queue"));
+					}
+					break;
+				case FAIL_FAST:
+					rejectionHandler.accept(message, new IllegalStateException("Handler queue is full"));
+					return false;
+			}
+		}
+	}
+
+	private void startWorker() {
+		int current;
+		do {
+			current = workers.get();
+			if (current >= maxConcurrency) {
+				return;
+			}
+		} while (!workers.compareAndSet(current, current + 1));
+		try {
+			executor.execute(this::work);
+		} catch (RejectedExecutionException e) {
+			workers.decrementAndGet();
+			Message message = queue.poll();
+			if (message != null) {
+				size.decrementAndGet();
+				rejectionHandler.accept(message, e);
+			}
+		}
+	}
+
+	private void work() {
+		try {
+			for (int i = 0; i < WORKER_BATCH_SIZE && !closed; i++) {
+				Message message = queue.poll();
+				if (message == null) {
+					break;
+				}
+				size.decrementAndGet();
+				handler.accept(message);
+			}
+		} finally {
+			workers.decrementAndGet();
+			// a message queued while this worker was stopping would otherwise wait for the next one
+			if (!closed && !queue.isEmpty()) {
+				startWorker();
+			}
+		}
+	}
+
+	/**
+	 * Stops handling and drops the queued messages. Handlers already running finish.
+	 */
+	void close() {
+		closed = true;
+		queue.clear();
+		size.set(0);
+	}
+}
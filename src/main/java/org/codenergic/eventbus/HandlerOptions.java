@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Isolates one handler from the other handlers of its address. With an executor the handler gets a queue of its
+ * own, drained by at most {@link #getMaxConcurrency()} tasks at a time, so a slow handler only delays itself.
+ * Without one the handler runs on the dispatching thread like any other and the remaining options are ignored.
+ */
+public class HandlerOptions {
+	private Executor executor;
+	private int maxConcurrency = 1;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private int queueCapacity = 1024;
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Executor that runs the handler. It is not shut down by the event bus.
+	 */
+	public HandlerOptions setExecutor(Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Messages handled in parallel. One (the default) handles them one at a time in arrival order.
+	 */
+	public HandlerOptions setMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+		this.maxConcurrency = maxConcurrency;
+		return this;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * What happens to a message when the queue is full. Dropped and refused messages go to the error handler of
+	 * the registration. {@link OverflowPolicy#BLOCK} (the default) holds up the dispatching thread, and with it the
+	 * other handlers, until the queue has room.
+	 */
+	public HandlerOptions setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+		return this;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public HandlerOptions setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queueCapacity must be positive");
+		}
+		this.queueCapacity = queueCapacity;
+		return this;
+	}
+}
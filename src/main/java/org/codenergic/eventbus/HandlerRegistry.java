@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Copy-on-write registry of message handlers. Each address maps to an immutable array of registrations which
+ * dispatch iterates without locking; registering and unregistering swap the array atomically per address.
+ * Addresses that are patterns are also indexed in an {@link AddressTrie}.
+ */
+final class HandlerRegistry {
+	private static final Registration[] EMPTY = new Registration[0];
+
+	private final Map<String, Registration[]> registrations = new ConcurrentHashMap<>();
+	private final AddressTrie patterns = new AddressTrie();
+
+	/**
+	 * Adds a handler, running {@code onFirst} inside the per-address critical section when the address had no
+	 * handlers yet. If {@code onFirst} throws, the registry is left unchanged.
+	 */
+	void add(String address, Registration registration, Runnable onFirst) {
+		registrations.compute(address, (key, current) -> {
+			if (current == null) {
+				onFirst.run();
+				if (AddressTrie.isPattern(address)) {
+					patterns.add(address);
+				}
+				return new Registration[]{registration};
+			}
+			Registration[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = registration;
+			return updated;
+		});
+	}
+
+	Set<String> addresses() {
+		return registrations.keySet();
+	}
+
+	/**
+	 * Whether the address has handlers of its own or, when it is not a pattern itself, matches a pattern.
+	 */
+	boolean contains(String address) {
+		return registrations.containsKey(address)
+				|| (!patterns.isEmpty() && !AddressTrie.isPattern(address) && patterns.matches(address));
+	}
+
+	Registration[] get(String address) {
+		Registration[] current = registrations.get(address);
+		return current == null ? EMPTY : current;
+	}
+
+	/**
+	 * Handlers of the address followed by the handlers of every pattern it matches, each handler once. A message
+	 * addressed to a pattern itself, as the bridge delivers for the pattern's own REGISTER, only reaches the
+	 * handlers of that pattern.
+	 */
+	Registration[] match(String address) {
+		Registration[] exact = get(address);
+		if (patterns.isEmpty() || AddressTrie.isPattern(address)) {
+			return exact;
+		}
+		Registration[][] matched = {exact};
+		patterns.match(address, pattern -> matched[0] = merge(matched[0], get(pattern)));
+		return matched[0];
+	}
+
+	/**
+	 * The first registrations followed by those of the second whose handler is not among them yet, so a handler
+	 * registered for several matching patterns runs once.
+	 */
+	private static Registration[] merge(Registration[] first, Registration[] second) {
+		if (first.length == 0) {
+			return second;
+		}
+		Registration[] result = Arrays.copyOf(first, first.length + second.length);
+		int size = first.length;
+		for (Registration registration : second) {
+			if (indexOf(first, registration.handler) < 0) {
+				result[size++] = registration;
+			}
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Removes one registration of a handler, running {@code onLast} inside the per-address critical section when
+	 * it was the last handler of the address.
+	 *
+	 * @return the removed registration, or {@code null} if the handler was not registered
+	 */
+	Registration remove(String address, Consumer<Message> handler, Runnable onLast) {
+		Registration[] removed = new Registration[1];
+		registrations.computeIfPresent(address, (key, current) -> {
+			int index = indexOf(current, handler);
+			if (index < 0) {
+				return current;
+			}
+			removed[0] = current[index];
+			if (current.length == 1) {
+				onLast.run();
+				patterns.remove(address);
+				return null;
+			}
+			Registration[] updated = new Registration[current.length - 1];
+			System.arraycopy(current, 0, updated, 0, index);
+			System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+			return updated;
+		});
+		return removed[0];
+	}
+
+	private static int indexOf(Registration[] registrations, Consumer<Message> handler) {
+		for (int i = 0; i < registrations.length; i++) {
+			if (registrations[i].handler == handler) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	static final class Registration {
+		final Consumer<Message> handler;
+		final BiConsumer<Message, Throwable> errorHandler;
+		final Map<String, Object> headers;
+		final HandlerBulkhead bulkhead;
+
+		Registration(Consumer<Message> handler, BiConsumer<Message, Throwable> errorHandler, Map<String, Object> headers,
+					 HandlerBulkhead bulkhead) {
+			this.handler = handler;
+			this.errorHandler = errorHandler;
+			this.headers = headers;
+			this.bulkhead = bulkhead;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer for large numbers of short lived timeouts, such as pending replies. Timeouts are hashed into a wheel of
+ * buckets that a single thread advances once per tick, so scheduling and cancelling are O(1) and the accuracy is
+ * one tick.
+ */
+final class HashedWheelTimer {
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+	// timeouts neither expired nor cancelled
+	private final AtomicInteger live = new AtomicInteger();
+	private final Thread worker;
+	private final long startTime;
+	private volatile boolean running = true;
+	private long tick;
+
+	HashedWheelTimer(String threadName, long tickDuration, TimeUnit unit, int wheelSize) {
+		if (Integer.bitCount(wheelSize) != 1) {
+			throw new IllegalArgumentException("wheelSize must be a power of two");
+		}
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheel = new Bucket[wheelSize];
+		for (int i = 0; i < wheelSize; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheelSize - 1;
+		this.startTime = System.nanoTime();
+		this.worker = new Thread(this::run, threadName);
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		if (!running) {
+			throw new IllegalStateException("Timer has been stopped");
+		}
+		Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay), live);
+		live.incrementAndGet();
+		pending.add(timeout);
+		return timeout;
+	}
+
+	int liveTimeouts() {
+		return live.get();
+	}
+
+	void stop() {
+		running = false;
+		worker.interrupt();
+	}
+
+	private void run() {
+		while (running) {
+			long deadline = tickNanos * (tick + 1);
+			long sleepNanos = deadline - (System.nanoTime() - startTime);
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					continue;
+				}
+			}
+			transferPending();
+			wheel[(int) (tick & mask)].expire();
+			tick++;
+		}
+	}
+
+	private void transferPending() {
+		// bounded so a flood of new timeouts cannot starve expiry
+		for (int i = 0; i < 100_000; i++) {
+			Timeout timeout = pending.poll();
+			if (timeout == null) {
+				return;
+			}
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			long ticks = Math.max(timeout.deadline / tickNanos, tick);
+			timeout.remainingRounds = (ticks - tick) / wheel.length;
+			wheel[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	static final class Timeout {
+		private static final int INIT = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		private final Runnable task;
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger(INIT);
+		private final AtomicInteger live;
+		private long remainingRounds;
+		private Timeout next;
+		private Timeout prev;
+
+		private Timeout(Runnable task, long deadline, AtomicInteger live) {
+			this.task = task;
+			this.deadline = deadline;
+			this.live = live;
+		}
+
+		boolean cancel() {
+			// the worker unlinks cancelled timeouts the next time it visits their bucket
+			if (state.compareAndSet(INIT, CANCELLED)) {
+				live.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+
+		boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+
+		private void expire() {
+			if (state.compareAndSet(INIT, EXPIRED)) {
+				live.decrementAndGet();
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					// a failing task must not stop the timer
+				}
+			}
+		}
+	}
+
+	private static final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void expire() {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.isCancelled()) {
+					remove(timeout);
+				} else if (timeout.remainingRounds <= 0) {
+					remove(timeout);
+					timeout.expire();
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		private void remove(Timeout timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = timeout.next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+		}
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable message headers in insertion order. Keys and values are kept in two arrays, searched linearly below
+ * eight entries and through a hash index from there on. Keys are interned, so headers repeating the same few names
+ * share them and compare them by identity first. From its second send on, encoders keep the serialized form of a
+ * {@code Headers} instance, shared by all encoders of the same object mapper, so reusing one instance across sends
+ * writes its bytes only once; header values must therefore not change. Header
+ * names must not be null; building headers from a null name throws {@link IllegalArgumentException}.
+ */
+public final class Headers extends AbstractMap<String, Object> {
+	public static final Headers EMPTY = new Headers(new String[0], new Object[0], 0);
+
+	private static final int INDEX_THRESHOLD = 8;
+	// bounded so that peers sending arbitrary names cannot grow it forever
+	private static final int MAX_INTERNED_KEYS = 1024;
+	private static final Map<String, String> INTERNED_KEYS = new ConcurrentHashMap<>();
+
+	private final String[] keys;
+	private final Object[] values;
+	private final int size;
+	private final Map<String, Integer> index;
+	private Set<Entry<String, Object>> entrySet;
+	// the key of the encoders that wrote these headers once without keeping their form
+	private volatile Object seenBy;
+	private volatile Serialized serialized;
+
+	private Headers(String[] keys, Object[] values, int size) {
+		this.keys = keys;
+		this.values = values;
+		this.size = size;
+		if (size >= INDEX_THRESHOLD) {
+			index = new HashMap<>(size * 2);
+			for (int i = 0; i < size; i++) {
+				index.put(keys[i], i);
+			}
+		} else {
+			index = null;
+		}
+	}
+
+	public static Headers of(String key, Object value) {
+		return new Headers(new String[]{intern(key)}, new Object[]{value}, 1);
+	}
+
+	public static Headers of(String key1, Object value1, String key2, Object value2) {
+		return EMPTY.with(key1, value1).with(key2, value2);
+	}
+
+	/**
+	 * The given headers as {@code Headers}, or the same instance when they already are.
+	 */
+	public static Headers copyOf(Map<String, ?> headers) {
+		if (headers instanceof Headers) {
+			return (Headers) headers;
+		}
+		if (headers == null || headers.isEmpty()) {
+			return EMPTY;
+		}
+		String[] keys = new String[headers.size()];
+		Object[] values = new Object[keys.length];
+		int size = 0;
+		for (Map.Entry<String, ?> header : headers.entrySet()) {
+			keys[size] = intern(header.getKey());
+			values[size++] = header.getValue();
+		}
+		return new Headers(keys, values, size);
+	}
+
+	/**
+	 * Headers read from a frame by a codec, which hands over its arrays. A repeated key keeps its last value.
+	 */
+	static Headers decoded(String[] keys, Object[] values, int size) {
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			String key = intern(keys[i]);
+			int existing = indexOf(keys, distinct, key);
+			if (existing >= 0) {
+				values[existing] = values[i];
+			} else {
+				keys[distinct] = key;
+				values[distinct++] = values[i];
+			}
+		}
+		return distinct == 0 ? EMPTY : new Headers(keys, values, distinct);
+	}
+
+	static String intern(String key) {
+		if (key == null) {
+			throw new IllegalArgumentException("header name must not be null");
+		}
+		String interned = INTERNED_KEYS.get(key);
+		if (interned != null) {
+			return interned;
+		}
+		if (INTERNED_KEYS.size() >= MAX_INTERNED_KEYS) {
+			return key;
+		}
+		interned = INTERNED_KEYS.putIfAbsent(key, key);
+		return interned == null ? key : interned;
+	}
+
+	private static int indexOf(String[] keys, int size, String key) {
+		for (int i = 0; i < size; i++) {
+			// interned keys usually match by identity
+			if (keys[i] == key || keys[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int indexOf(Object key) {
+		if (index != null) {
+			Integer i = index.get(key);
+			return i == null ? -1 : i;
+		}
+		return key instanceof String ? indexOf(keys, size, (String) key) : -1;
+	}
+
+	/**
+	 * These headers with the given one added, or replaced when the key is already present.
+	 */
+	public Headers with(String key, Object value) {
+		String interned = intern(key);
+		int i = indexOf(interned);
+		if (i >= 0) {
+			Object[] replaced = Arrays.copyOf(values, size);
+			replaced[i] = value;
+			return new Headers(Arrays.copyOf(keys, size), replaced, size);
+		}
+		String[] addedKeys = Arrays.copyOf(keys, size + 1);
+		Object[] addedValues = Arrays.copyOf(values, size + 1);
+		addedKeys[size] = interned;
+		addedValues[size] = value;
+		return new Headers(addedKeys, addedValues, size + 1);
+	}
+
+	/**
+	 * These headers without the given one, or the same instance when it is not present.
+	 */
+	public Headers without(String key) {
+		int i = indexOf(key);
+		if (i < 0) {
+			return this;
+		}
+		String[] remainingKeys = new String[size - 1];
+		Object[] remainingValues = new Object[size - 1];
+		System.arraycopy(keys, 0, remainingKeys, 0, i);
+		System.arraycopy(values, 0, remainingValues, 0, i);
+		System.arraycopy(keys, i + 1, remainingKeys, i, size - i - 1);
+		System.arraycopy(values, i + 1, remainingValues, i, size - i - 1);
+		return new Headers(remainingKeys, remainingValues, size - 1);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int i = indexOf(key);
+		return i < 0 ? null : values[i];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		Set<Entry<String, Object>> entries = entrySet;
+		if (entries == null) {
+			entries = new AbstractSet<Entry<String, Object>>() {
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					return new Iterator<Entry<String, Object>>() {
+						private int next;
+
+						@Override
+						public boolean hasNext() {
+							return next < size;
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							if (next >= size) {
+								throw new NoSuchElementException();
+							}
+							int i = next++;
+							return new SimpleImmutableEntry<>(keys[i], values[i]);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+			entrySet = entries;
+		}
+		return entries;
+	}
+
+	/**
+	 * The form kept for encoders of {@code key}, or {@code null}. Encoders writing the same bytes share a key.
+	 */
+	Object serialized(Object key) {
+		Serialized current = serialized;
+		return current != null && current.key == key ? current.form : null;
+	}
+
+	void serialized(Object key, Object form) {
+		serialized = new Serialized(key, form);
+	}
+
+	/**
+	 * Whether encoders of {@code key} wrote these headers before. The first call only remembers the key, so headers
+	 * sent once are written directly and never kept.
+	 */
+	boolean serializedBefore(Object key) {
+		if (seenBy == key) {
+			return true;
+		}
+		seenBy = key;
+		return false;
+	}
+
+	private static final class Serialized {
+		final Object key;
+		final Object form;
+
+		Serialized(Object key, Object form) {
+			this.key = key;
+			this.form = form;
+		}
+	}
+}
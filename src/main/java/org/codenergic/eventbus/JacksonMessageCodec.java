@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes envelopes as objects in the format of the object mapper's factory. A plain {@link ObjectMapper} gives the
+ * JSON the Vert.x bridge speaks; one built on a binary factory such as
+ * {@code com.fasterxml.jackson.dataformat.cbor.CBORFactory} gives smaller frames for bridges that read the same
+ * format. Inbound bodies and headers are decoded lazily from their byte range, which formats with back references
+ * into earlier parts of the frame, like Smile with shared names, do not support.
+ */
+public final class JacksonMessageCodec implements MessageCodec {
+	private final MessageEncoder messageEncoder;
+	private final MessageDecoder messageDecoder;
+	private final byte[] ping;
+	private final byte[] barrier;
+
+	public JacksonMessageCodec(ObjectMapper objectMapper) {
+		this.messageEncoder = new MessageEncoder(objectMapper);
+		this.messageDecoder = new MessageDecoder(objectMapper);
+		try {
+			this.ping = objectMapper.writeValueAsBytes(Collections.singletonMap("type", "ping"));
+			this.barrier = objectMapper.writeValueAsBytes(Collections.singletonMap("type", "register"));
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@Override
+	public byte[] encode(Message.MessageType type, String address, Map<String, Object> headers, Object body,
+						 String replyAddress) throws IOException {
+		return messageEncoder.encode(type, address, headers, body, replyAddress);
+	}
+
+	@Override
+	public Message decode(byte[] frame) throws IOException {
+		return messageDecoder.decode(frame);
+	}
+
+	@Override
+	public byte[] barrier() {
+		return barrier;
+	}
+
+	@Override
+	public byte[] ping() {
+		return ping;
+	}
+}
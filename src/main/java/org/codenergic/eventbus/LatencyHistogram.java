@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram in the style of HdrHistogram: every power of two range is split into 32 linear
+ * sub-buckets, which bounds the relative error of recorded values to about 3% over the whole {@code long} range.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(0, value);
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + (shift << SUB_BUCKET_BITS) + subBucket;
+	}
+
+	static long valueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int offset = index - SUB_BUCKETS;
+		int shift = offset >>> SUB_BUCKET_BITS;
+		long subBucket = offset & (SUB_BUCKETS - 1);
+		return (SUB_BUCKETS + subBucket) << shift;
+	}
+
+	public void record(long value) {
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	public long getMax() {
+		for (int i = BUCKETS - 1; i >= 0; i--) {
+			if (counts.get(i) > 0) {
+				return valueOf(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Lowest value of the bucket holding the given percentile, e.g. {@code 99.9}.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return valueOf(i);
+			}
+		}
+		return valueOf(BUCKETS - 1);
+	}
+}
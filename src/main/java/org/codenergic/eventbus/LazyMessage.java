@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Message backed by its inbound frame. Only the address is read when the frame arrives, so frames nobody handles
+ * cost one partial pass; see {@link MessageDecoder} and {@link CompactMessageCodec}.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.NONE, getterVisibility = Visibility.PUBLIC_ONLY)
+final class LazyMessage extends Message {
+	private final byte[] frame;
+	private final FrameScanner frameScanner;
+	private volatile boolean scanned;
+	private int headersOffset = -1;
+	private int headersLength;
+	private volatile boolean headersDecoded;
+
+	LazyMessage(String address, byte[] frame, FrameScanner frameScanner, ObjectMapper objectMapper) {
+		this.address = address;
+		this.frame = frame;
+		this.frameScanner = frameScanner;
+		this.objectMapper = objectMapper;
+	}
+
+	private void scan() {
+		if (!scanned) {
+			synchronized (this) {
+				if (!scanned) {
+					try {
+						frameScanner.scan(this, frame);
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+					scanned = true;
+				}
+			}
+		}
+	}
+
+	void setRawHeaders(int offset, int length) {
+		this.headersOffset = offset;
+		this.headersLength = length;
+	}
+
+	@Override
+	public String getBody() {
+		scan();
+		return super.getBody();
+	}
+
+	@Override
+	public <T> T getBody(Class<T> type) {
+		scan();
+		return super.getBody(type);
+	}
+
+	@Override
+	public JsonNode getBodyAsTree() {
+		scan();
+		return super.getBodyAsTree();
+	}
+
+	@Override
+	public Integer getFailureCode() {
+		scan();
+		return super.getFailureCode();
+	}
+
+	@Override
+	public String getFailureMessage() {
+		scan();
+		return super.getFailureMessage();
+	}
+
+	@Override
+	public String getFailureType() {
+		scan();
+		return super.getFailureType();
+	}
+
+	@Override
+	public Map<String, Object> getHeaders() {
+		scan();
+		if (!headersDecoded) {
+			synchronized (this) {
+				if (!headersDecoded) {
+					try {
+						headers = headersOffset < 0 ? null : frameScanner.decodeHeaders(frame, headersOffset, headersLength);
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+					headersDecoded = true;
+				}
+			}
+		}
+		return super.getHeaders();
+	}
+
+	@Override
+	boolean hasHeaders() {
+		scan();
+		// an empty JSON object takes two bytes, any header more
+		return headersDecoded ? super.hasHeaders() : headersOffset >= 0 && headersLength > 2;
+	}
+
+	@Override
+	public String getReplyAddress() {
+		scan();
+		return super.getReplyAddress();
+	}
+
+	@Override
+	public String getType() {
+		scan();
+		return super.getType();
+	}
+}
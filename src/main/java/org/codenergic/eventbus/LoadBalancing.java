@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+/**
+ * How a pooled event bus picks the connection that carries a send or publish.
+ */
+public enum LoadBalancing {
+	/**
+	 * Use the connections in turn.
+	 */
+	ROUND_ROBIN,
+	/**
+	 * Use the connection with the fewest replies and frames still in flight.
+	 */
+	LEAST_PENDING
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+/**
+ * Where messages sent or published to an address with handlers on the same connection are delivered.
+ */
+public enum LocalDelivery {
+	/**
+	 * Always through the server, which delivers back to the local handlers (the default).
+	 */
+	REMOTE,
+	/**
+	 * To the local handlers only, in-process and without encoding the body. Addresses without local handlers still go
+	 * through the server.
+	 */
+	LOCAL,
+	/**
+	 * To the local handlers in-process and through the server to remote consumers. The copy the server delivers back
+	 * is recognised by the {@link #ORIGIN_HEADER} header and dropped. Only valid for publishing.
+	 */
+	LOCAL_AND_REMOTE;
+
+	/**
+	 * Header naming the connection a message delivered both locally and remotely was published from.
+	 */
+	public static final String ORIGIN_HEADER = "x-eventbus-origin";
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Message delivered in-process, holding the body object it was sent with. Handlers asking for the body as its own
+ * type get that very object; text and trees are only produced when asked for. Its type is {@code rec}, like every
+ * message the server delivers, so handlers cannot tell the two paths apart.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.NONE, getterVisibility = Visibility.PUBLIC_ONLY)
+final class LocalMessage extends Message {
+	private final Object value;
+
+	LocalMessage(String address, Map<String, Object> headers, Object value, ObjectMapper objectMapper) {
+		this.type = "rec";
+		this.address = address;
+		this.headers = headers == null ? Headers.EMPTY : headers;
+		this.body = value instanceof String ? (String) value : null;
+		this.value = value;
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public String getBody() {
+		if (body == null && value != null) {
+			try {
+				body = (isJson(objectMapper) ? objectMapper : DEFAULT_OBJECT_MAPPER).writeValueAsString(value);
+			} catch (JsonProcessingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return body;
+	}
+
+	@Override
+	public <T> T getBody(Class<T> type) {
+		if (value == null || value instanceof String) {
+			return super.getBody(type);
+		}
+		if (type.isInstance(value)) {
+			return type.cast(value);
+		}
+		if (type == String.class) {
+			return type.cast(getBody());
+		}
+		try {
+			return objectMapper.convertValue(value, type);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public JsonNode getBodyAsTree() {
+		if (value == null || value instanceof String) {
+			return super.getBodyAsTree();
+		}
+		return objectMapper.valueToTree(value);
+	}
+}
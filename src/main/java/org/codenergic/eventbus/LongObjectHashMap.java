@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Open addressing hash map with primitive {@code long} keys, avoiding boxing and string hashing. Key {@code 0} is
+ * reserved as the empty marker. Not thread safe.
+ */
+final class LongObjectHashMap<V> {
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	/**
+	 * @param expectedSize number of entries the map holds before it first rehashes
+	 */
+	LongObjectHashMap(int expectedSize) {
+		int minimum = Math.max(4, (int) Math.ceil(expectedSize / LOAD_FACTOR));
+		allocate(Integer.highestOneBit(minimum * 2 - 1));
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	int tableSize() {
+		return keys.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		for (int i = index(key); keys[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	V put(long key, V value) {
+		if (key == 0) {
+			throw new IllegalArgumentException("key must not be 0");
+		}
+		int i = index(key);
+		for (; keys[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > resizeThreshold) {
+			rehash(keys.length * 2);
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	V remove(long key) {
+		for (int i = index(key); keys[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				size--;
+				shiftBack(i);
+				return previous;
+			}
+		}
+		return null;
+	}
+
+	int size() {
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	void drain(Consumer<V> consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				consumer.accept((V) values[i]);
+			}
+		}
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void shiftBack(int hole) {
+		// backward shift deletion keeps probe sequences intact without tombstones
+		int i = hole;
+		while (true) {
+			i = (i + 1) & mask;
+			long key = keys[i];
+			if (key == 0) {
+				break;
+			}
+			int ideal = index(key);
+			if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = key;
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = 0;
+		values[hole] = null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				put(oldKeys[i], (V) oldValues[i]);
+			}
+		}
+	}
+
+	private int index(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
@@ -15,25 +15,40 @@
  */
 package org.codenergic.eventbus;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.Optional;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
 
 @JsonAutoDetect(fieldVisibility = Visibility.ANY, setterVisibility = Visibility.NONE)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Message {
-	private String type;
-	private String address;
-	private Map<String, Object> headers;
-	private String body;
-	private String replyAddress;
-	private Integer failureCode;
-	private String failureType;
-	private String failureMessage;
+	static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper();
+
+	String type;
+	String address;
+	Map<String, Object> headers;
+	String body;
+	String replyAddress;
+	Integer failureCode;
+	String failureType;
+	String failureMessage;
+	@JsonIgnore
+	ObjectMapper objectMapper = DEFAULT_OBJECT_MAPPER;
+	@JsonIgnore
+	private byte[] rawBody;
+	@JsonIgnore
+	private int rawBodyOffset;
+	@JsonIgnore
+	private int rawBodyLength;
 
 	protected Message() {
 	}
@@ -41,7 +56,7 @@ public class Message {
 	public Message(MessageType type, String address, Map<String, Object> headers, String body, String replyAddress) {
 		this.type = type.getEventBusMessageType();
 		this.address = address;
-		this.headers = Optional.ofNullable(headers).orElse(new HashMap<>());
+		this.headers = headers == null ? Headers.EMPTY : headers;
 		this.body = body;
 		this.replyAddress = replyAddress;
 	}
@@ -60,10 +75,53 @@ public class Message {
 		return address;
 	}
 
+	/**
+	 * The body as text. A body that is not a JSON string is returned as its JSON text.
+	 */
 	public String getBody() {
+		if (body == null && rawBody != null) {
+			body = isJson(objectMapper) ? new String(rawBody, rawBodyOffset, rawBodyLength, StandardCharsets.UTF_8)
+					: getBodyAsTree().toString();
+		}
 		return body;
 	}
 
+	static boolean isJson(ObjectMapper objectMapper) {
+		return JsonFactory.FORMAT_NAME_JSON.equals(objectMapper.getFactory().getFormatName());
+	}
+
+	/**
+	 * Reads the body as the given type. A JSON string body is parsed as JSON unless a string is asked for, which
+	 * keeps peers that send encoded JSON as a string working.
+	 */
+	public <T> T getBody(Class<T> type) {
+		try {
+			if (rawBody != null) {
+				return objectMapper.readValue(rawBody, rawBodyOffset, rawBodyLength, type);
+			}
+			String text = getBody();
+			if (text == null || type.isInstance(text)) {
+				return type.cast(text);
+			}
+			return (isJson(objectMapper) ? objectMapper : DEFAULT_OBJECT_MAPPER).readValue(text, type);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@JsonIgnore
+	public JsonNode getBodyAsTree() {
+		try {
+			if (rawBody != null) {
+				return objectMapper.readValue(rawBody, rawBodyOffset, rawBodyLength, JsonNode.class);
+			}
+			String text = getBody();
+			return text == null ? null : TextNode.valueOf(text);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	public Integer getFailureCode() {
 		return failureCode;
 	}
@@ -88,10 +146,24 @@ public class Message {
 		return type;
 	}
 
+	/**
+	 * Whether the message has headers, which for a lazily read message is known without decoding them.
+	 */
+	boolean hasHeaders() {
+		Map<String, Object> headers = getHeaders();
+		return headers != null && !headers.isEmpty();
+	}
+
+	void setRawBody(byte[] frame, int offset, int length) {
+		this.rawBody = frame;
+		this.rawBodyOffset = offset;
+		this.rawBodyLength = length;
+	}
+
 	public enum MessageType {
 		SEND, PUBLISH, REGISTER, UNREGISTER;
 
-		private String getEventBusMessageType() {
+		String getEventBusMessageType() {
 			return name().toLowerCase();
 		}
 	}
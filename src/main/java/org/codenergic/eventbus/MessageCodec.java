@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Wire format of event bus frames. Every codec has to be understood by the bridge on the other end: the stock
+ * Vert.x SockJS bridge only speaks {@link JacksonMessageCodec} over a JSON object mapper. Codecs are shared by all
+ * connections of an event bus and must be thread safe.
+ */
+public interface MessageCodec {
+	/**
+	 * Writes an outbound envelope. A {@code String} body is written as a string and any other body as structured
+	 * data.
+	 */
+	byte[] encode(Message.MessageType type, String address, Map<String, Object> headers, Object body,
+				  String replyAddress) throws IOException;
+
+	Message decode(byte[] frame) throws IOException;
+
+	/**
+	 * The frame that keeps the bridge session alive. Returned as is on every ping, so it must not change.
+	 */
+	byte[] ping();
+
+	/**
+	 * A register frame without an address, which the bridge answers with a {@code missing_address} error once it
+	 * has read every frame before it. Sent after the registrations of a new connection to learn when the bridge has
+	 * read them, which puts them in place as long as its bridge event handler completes REGISTER events synchronously.
+	 * Returned as is, so it must not change.
+	 */
+	byte[] barrier();
+}
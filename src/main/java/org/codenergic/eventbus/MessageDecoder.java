@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Decodes inbound event bus frames into {@link LazyMessage}. Decoding reads the address only; the rest of the frame
+ * is read in a single pass over a streaming {@link JsonParser} the first time another field is asked for. Headers
+ * and bodies other than JSON strings are only decoded from their byte range when their getters are called.
+ */
+final class MessageDecoder implements FrameScanner {
+	private final ObjectMapper objectMapper;
+	private final JsonFactory jsonFactory;
+
+	MessageDecoder(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		this.jsonFactory = objectMapper.getFactory();
+	}
+
+	Message decode(byte[] frame) throws IOException {
+		return new LazyMessage(readAddress(frame), frame, this, objectMapper);
+	}
+
+	private String readAddress(byte[] frame) throws IOException {
+		try (JsonParser parser = jsonFactory.createParser(frame)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Event bus frame is not a JSON object");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				boolean address = "address".equals(parser.getCurrentName());
+				parser.nextToken();
+				if (address) {
+					return parser.getValueAsString();
+				}
+				parser.skipChildren();
+			}
+			return null;
+		}
+	}
+
+	@Override
+	public void scan(LazyMessage message, byte[] frame) throws IOException {
+		try (JsonParser parser = jsonFactory.createParser(frame)) {
+			parser.nextToken();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				switch (field) {
+					case "type":
+						message.type = parser.getValueAsString();
+						break;
+					case "headers":
+						if (token == JsonToken.START_OBJECT) {
+							int offset = (int) parser.getTokenLocation().getByteOffset();
+							parser.skipChildren();
+							message.setRawHeaders(offset, (int) parser.getCurrentLocation().getByteOffset() - offset);
+						} else {
+							parser.skipChildren();
+						}
+						break;
+					case "body":
+						if (token == JsonToken.VALUE_STRING) {
+							message.body = parser.getText();
+						} else if (token != JsonToken.VALUE_NULL) {
+							int offset = (int) parser.getTokenLocation().getByteOffset();
+							parser.skipChildren();
+							message.setRawBody(frame, offset, (int) parser.getCurrentLocation().getByteOffset() - offset);
+						}
+						break;
+					case "replyAddress":
+						message.replyAddress = parser.getValueAsString();
+						break;
+					case "failureCode":
+						message.failureCode = token == JsonToken.VALUE_NULL ? null : parser.getValueAsInt();
+						break;
+					case "failureType":
+						message.failureType = parser.getValueAsString();
+						break;
+					case "failureMessage":
+					case "message":
+						message.failureMessage = parser.getValueAsString();
+						break;
+					default:
+						parser.skipChildren();
+				}
+			}
+		}
+	}
+
+	@Override
+	public Map<String, Object> decodeHeaders(byte[] frame, int offset, int length) throws IOException {
+		try (JsonParser parser = jsonFactory.createParser(frame, offset, length)) {
+			parser.nextToken();
+			String[] names = new String[4];
+			Object[] values = new Object[4];
+			int count = 0;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				if (count == names.length) {
+					names = Arrays.copyOf(names, count * 2);
+					values = Arrays.copyOf(values, count * 2);
+				}
+				names[count] = parser.getCurrentName();
+				values[count++] = readValue(parser, parser.nextToken());
+			}
+			return Headers.decoded(names, values, count);
+		}
+	}
+
+	private Object readValue(JsonParser parser, JsonToken token) throws IOException {
+		switch (token) {
+			case VALUE_STRING:
+				return parser.getText();
+			case VALUE_NUMBER_INT:
+			case VALUE_NUMBER_FLOAT:
+				return parser.getNumberValue();
+			case VALUE_TRUE:
+				return Boolean.TRUE;
+			case VALUE_FALSE:
+				return Boolean.FALSE;
+			case VALUE_NULL:
+				return null;
+			default:
+				return objectMapper.readValue(parser, Object.class);
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Hands inbound messages to handlers. Without an executor messages are delivered on the socket reading thread.
+ * With one, ordered dispatch keeps a bounded FIFO mailbox per address so that messages of one address are delivered
+ * one at a time and in order, while different addresses run in parallel. A mailbox found empty after a drain is
+ * retired and removed, so the addresses matched by a pattern do not leave one mailbox each behind.
+ */
+final class MessageDispatcher {
+	private static final int MAILBOX_BATCH_SIZE = 64;
+	private static final long BLOCK_PARK_NANOS = 50_000;
+	// the size of a retired mailbox, which takes no more messages
+	private static final int RETIRED = -1;
+
+	private final Executor executor;
+	private final boolean ownsExecutor;
+	private final boolean ordered;
+	private final int mailboxCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final Consumer<Message> delivery;
+	private final BiConsumer<Message, Throwable> rejectionHandler;
+	private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+	private final AtomicInteger unorderedDepth = new AtomicInteger();
+
+	MessageDispatcher(EventBusOptions options, Consumer<Message> delivery, BiConsumer<Message, Throwable> rejectionHandler) {
+		if (options.getDispatchExecutor() != null) {
+			this.executor = options.getDispatchExecutor();
+			this.ownsExecutor = false;
+		} else if (options.isDispatchOnVirtualThreads()) {
+			this.executor = newVirtualThreadExecutor();
+			this.ownsExecutor = this.executor instanceof ExecutorService;
+		} else {
+			this.executor = null;
+			this.ownsExecutor = false;
+		}
+		this.ordered = options.isOrderedDispatch();
+		this.mailboxCapacity = options.getMailboxCapacity();
+		this.overflowPolicy = options.getMailboxOverflowPolicy();
+		this.delivery = delivery;
+		this.rejectionHandler = rejectionHandler;
+	}
+
+	static Executor newVirtualThreadExecutor() {
+		try {
+			Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (Executor) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// virtual threads are not available before Java 21
+			return ForkJoinPool.commonPool();
+		}
+	}
+
+	void close() {
+		if (ownsExecutor) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+
+	void dispatch(Message message) {
+		if (executor == null) {
+			delivery.accept(message);
+		} else if (ordered) {
+			String address = message.getAddress();
+			while (true) {
+				Mailbox mailbox = mailboxes.computeIfAbsent(address, Mailbox::new);
+				if (mailbox.enqueue(message)) {
+					return;
+				}
+				// retired while idle, and possibly not yet removed by its drain
+				mailboxes.remove(address, mailbox);
+			}
+		} else {
+			unorderedDepth.incrementAndGet();
+			executor.execute(() -> {
+				try {
+					delivery.accept(message);
+				} finally {
+					unorderedDepth.decrementAndGet();
+				}
+			});
+		}
+	}
+
+	/**
+	 * The executor handlers run on, or {@code fallback} when they run on the socket reading thread.
+	 */
+	Executor executorOr(Executor fallback) {
+		return executor == null ? fallback : executor;
+	}
+
+	void execute(Runnable task) {
+		if (executor == null) {
+			task.run();
+		} else {
+			executor.execute(task);
+		}
+	}
+
+	int queueDepth() {
+		int depth = unorderedDepth.get();
+		for (Mailbox mailbox : mailboxes.values()) {
+			depth += mailbox.depth();
+		}
+		return depth;
+	}
+
+	int queueDepth(String address) {
+		Mailbox mailbox = mailboxes.get(address);
+		return mailbox == null ? 0 : mailbox.depth();
+	}
+
+	int mailboxCount() {
+		return mailboxes.size();
+	}
+
+	void remove(String address) {
+		mailboxes.remove(address);
+	}
+
+	/**
+	 * Removes the mailboxes of addresses that no longer reach a handler, such as the addresses a removed pattern
+	 * matched.
+	 */
+	void retain(Predicate<String> matched) {
+		mailboxes.keySet().removeIf(matched.negate());
+	}
+
+	private final class Mailbox implements Runnable {
+		private final String address;
+		private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		Mailbox(String address) {
+			this.address = address;
+		}
+
+		int depth() {
+			return Math.max(size.get(), 0);
+		}
+
+		/**
+		 * @return {@code false} if the mailbox is retired and the message must go to a new one
+		 */
+		boolean enqueue(Message message) {
+			Boolean reserved = reserve(message);
+			if (reserved == null) {
+				return false;
+			}
+			if (reserved) {
+				queue.add(message);
+				schedule();
+			}
+			return true;
+		}
+
+		/**
+		 * @return whether a place was reserved, or {@code null} if the mailbox is retired
+		 */
+		private Boolean reserve(Message message) {
+			while (true) {
+				int current = size.get();
+				if (current == RETIRED) {
+					return null;
+				}
+				if (current < mailboxCapacity) {
+					if (size.compareAndSet(current, current + 1)) {
+						return true;
+					}
+					continue;
+				}
+				switch (overflowPolicy) {
+					case BLOCK:
+						// back pressure the socket reading thread until the mailbox drains
+						LockSupport.parkNanos(BLOCK_PARK_NANOS);
+						break;
+					case DROP_OLDEST:
+						Message dropped = queue.poll();
+						if (dropped != null) {
+							size.decrementAndGet();
+							rejectionHandler.accept(dropped, new IllegalStateException("Message dropped from full mailbox"));
+						}
+						break;
+					case FAIL_FAST:
+						rejectionHandler.accept(message, new IllegalStateException("Mailbox is full"));
+						return false;
+				}
+			}
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (int i = 0; i < MAILBOX_BATCH_SIZE; i++) {
+					Message message = queue.poll();
+					if (message == null) {
+						break;
+					}
+					size.decrementAndGet();
+					delivery.accept(message);
+				}
+			} finally {
+				scheduled.set(false);
+				if (!queue.isEmpty()) {
+					schedule();
+				} else if (size.compareAndSet(0, RETIRED)) {
+					// nothing is reserved, so no message can still arrive here
+					mailboxes.remove(address, this);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes outbound event bus envelopes straight into a reusable per-thread buffer, without going through
+ * an intermediate {@link Message}. Works with the JSON factory as well as binary ones of the same data model.
+ */
+final class MessageEncoder {
+	private static final Map<Message.MessageType, SerializableString> TYPE_PREFIXES = new EnumMap<>(Message.MessageType.class);
+	private static final SerializableString TYPE = new SerializedString("type");
+	private static final SerializableString ADDRESS = new SerializedString("address");
+	private static final SerializableString HEADERS = new SerializedString("headers");
+	private static final SerializableString BODY = new SerializedString("body");
+	private static final SerializableString REPLY_ADDRESS = new SerializedString("replyAddress");
+	private static final ThreadLocal<ByteArrayBuilder> BUFFERS = ThreadLocal.withInitial(() -> new ByteArrayBuilder(512));
+
+	static {
+		for (Message.MessageType type : Message.MessageType.values()) {
+			// the trailing comma lets the generator treat "address" as the first field of the object
+			TYPE_PREFIXES.put(type, new SerializedString("\"type\":\"" + type.getEventBusMessageType() + "\","));
+		}
+	}
+
+	private final JsonFactory jsonFactory;
+	private final boolean json;
+
+	MessageEncoder(ObjectMapper objectMapper) {
+		this.jsonFactory = objectMapper.getFactory();
+		this.json = JsonFactory.FORMAT_NAME_JSON.equals(jsonFactory.getFormatName());
+	}
+
+	/**
+	 * Writes a {@code String} body as a JSON string and any other body inline as JSON through the object mapper.
+	 */
+	byte[] encode(Message.MessageType type, String address, Map<String, Object> headers, Object body, String replyAddress) throws IOException {
+		ByteArrayBuilder buffer = BUFFERS.get();
+		try (JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+			generator.writeStartObject();
+			if (json) {
+				generator.writeRaw(TYPE_PREFIXES.get(type));
+			} else {
+				generator.writeFieldName(TYPE);
+				generator.writeString(type.getEventBusMessageType());
+			}
+			generator.writeFieldName(ADDRESS);
+			generator.writeString(address);
+			generator.writeFieldName(HEADERS);
+			writeHeaders(generator, headers);
+			if (body != null) {
+				generator.writeFieldName(BODY);
+				if (body instanceof String) {
+					generator.writeString((String) body);
+				} else {
+					generator.writeObject(body);
+				}
+			}
+			if (replyAddress != null) {
+				generator.writeFieldName(REPLY_ADDRESS);
+				generator.writeString(replyAddress);
+			}
+			generator.writeEndObject();
+			generator.flush();
+			return buffer.toByteArray();
+		} finally {
+			buffer.reset();
+		}
+	}
+
+	private void writeHeaders(JsonGenerator generator, Map<String, Object> headers) throws IOException {
+		if (json && headers instanceof Headers && !headers.isEmpty()) {
+			SerializableString serialized = serialized((Headers) headers);
+			if (serialized != null) {
+				generator.writeRawValue(serialized);
+				return;
+			}
+		}
+		writeHeaderObject(generator, headers);
+	}
+
+	private void writeHeaderObject(JsonGenerator generator, Map<String, Object> headers) throws IOException {
+		generator.writeStartObject();
+		if (headers != null) {
+			for (Map.Entry<String, Object> header : headers.entrySet()) {
+				generator.writeFieldName(header.getKey());
+				Object value = header.getValue();
+				if (value instanceof String) {
+					generator.writeString((String) value);
+				} else {
+					generator.writeObject(value);
+				}
+			}
+		}
+		generator.writeEndObject();
+	}
+
+	/**
+	 * The kept form of headers, created when they are written for the second time and shared by the encoders of the
+	 * same object mapper, whose factory keys it.
+	 */
+	private SerializableString serialized(Headers headers) throws IOException {
+		SerializableString serialized = (SerializableString) headers.serialized(jsonFactory);
+		if (serialized == null && headers.serializedBefore(jsonFactory)) {
+			StringWriter writer = new StringWriter();
+			try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+				writeHeaderObject(generator, headers);
+			}
+			serialized = new SerializedString(writer.toString());
+			headers.serialized(jsonFactory, serialized);
+		}
+		return serialized;
+	}
+
+	Object headersKey() {
+		return jsonFactory;
+	}
+}
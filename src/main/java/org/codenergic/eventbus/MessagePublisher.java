@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes the messages of an address. Every subscriber registers its own handler, which buffers up to
+ * {@code bufferSize} messages until the subscriber requests them and applies the overflow policy beyond that.
+ * Messages are signalled on the dispatching thread or on the thread calling {@link Subscription#request(long)}.
+ */
+final class MessagePublisher implements Publisher<Message> {
+	private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final EventBus eventBus;
+	private final String address;
+	private final int bufferSize;
+	private final OverflowPolicy overflowPolicy;
+
+	MessagePublisher(EventBus eventBus, String address, int bufferSize, OverflowPolicy overflowPolicy) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize must be positive");
+		}
+		this.eventBus = eventBus;
+		this.address = address;
+		this.bufferSize = bufferSize;
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Message> subscriber) {
+		AddressSubscription subscription = new AddressSubscription(Objects.requireNonNull(subscriber));
+		subscriber.onSubscribe(subscription);
+		subscription.start();
+	}
+
+	private final class AddressSubscription implements Subscription, Consumer<Message> {
+		private final Subscriber<? super Message> subscriber;
+		private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private final AtomicBoolean registered = new AtomicBoolean();
+		private volatile boolean cancelled;
+		private volatile Throwable failure;
+
+		AddressSubscription(Subscriber<? super Message> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		void start() {
+			if (cancelled) {
+				return;
+			}
+			try {
+				eventBus.registerHandler(address, this);
+				registered.set(true);
+			} catch (IllegalStateException e) {
+				fail(e);
+			}
+			if (cancelled) {
+				unregister();
+			}
+		}
+
+		@Override
+		public void accept(Message message) {
+			if (cancelled) {
+				return;
+			}
+			while (size.incrementAndGet() > bufferSize) {
+				size.decrementAndGet();
+				if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+					if (queue.poll() != null) {
+						size.decrementAndGet();
+					}
+				} else if (overflowPolicy == OverflowPolicy.FAIL_FAST) {
+					fail(new IllegalStateException("Subscriber of " + address + " fell " + bufferSize + " messages behind"));
+					return;
+				} else {
+					drain();
+					if (cancelled) {
+						return;
+					}
+					LockSupport.parkNanos(BLOCK_PARK_NANOS);
+				}
+			}
+			queue.offer(message);
+			drain();
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				fail(new IllegalArgumentException("Requested " + n + " messages, the demand must be positive"));
+				return;
+			}
+			long current;
+			do {
+				current = requested.get();
+				if (current == Long.MAX_VALUE) {
+					break;
+				}
+			} while (!requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			unregister();
+			drain();
+		}
+
+		private void fail(Throwable cause) {
+			if (cancelled) {
+				return;
+			}
+			failure = cause;
+			cancelled = true;
+			unregister();
+			drain();
+		}
+
+		private void unregister() {
+			if (registered.compareAndSet(true, false)) {
+				try {
+					eventBus.unregisterHandler(address, this);
+				} catch (IllegalStateException e) {
+					// the connection is gone and takes the registration with it
+				}
+			}
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				if (cancelled) {
+					queue.clear();
+					Throwable cause = failure;
+					if (cause != null) {
+						failure = null;
+						subscriber.onError(cause);
+					}
+				} else {
+					long demand = requested.get();
+					long emitted = 0;
+					Message message;
+					while (emitted != demand && !cancelled && (message = queue.poll()) != null) {
+						size.decrementAndGet();
+						subscriber.onNext(message);
+						emitted++;
+					}
+					if (emitted != 0 && demand != Long.MAX_VALUE) {
+						requested.addAndGet(-emitted);
+					}
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+}
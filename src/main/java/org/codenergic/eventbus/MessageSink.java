@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Sends or publishes every item it receives to an address. At most {@code window} items are requested ahead of
+ * the socket; completed writes return their credit, which a single drainer requests from upstream, so the
+ * subscription is never called from two threads at once. A failed write cancels the upstream subscription.
+ * {@link #completion()} completes once upstream completed and every write finished, or fails with the upstream
+ * error or the first failed write.
+ */
+public final class MessageSink implements Subscriber<Object> {
+	static final int DEFAULT_WINDOW = 64;
+
+	private final EventBus eventBus;
+	private final String address;
+	private final boolean publish;
+	private final int window;
+	private final AtomicLong credit = new AtomicLong();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger wip = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+	private volatile Subscription subscription;
+	private volatile boolean upstreamDone;
+	private boolean cancelled;
+
+	MessageSink(EventBus eventBus, String address, boolean publish, int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("window must be positive");
+		}
+		this.eventBus = eventBus;
+		this.address = address;
+		this.publish = publish;
+		this.window = window;
+	}
+
+	/**
+	 * Completes once upstream completed and every write it produced finished. Fails with the upstream error, after
+	 * the writes in flight finished, or with the first failed write.
+	 */
+	public CompletableFuture<Void> completion() {
+		return completion;
+	}
+
+	@Override
+	public void onSubscribe(Subscription subscription) {
+		Objects.requireNonNull(subscription);
+		if (this.subscription != null) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		credit.addAndGet(window);
+		drain();
+	}
+
+	@Override
+	public void onNext(Object item) {
+		Objects.requireNonNull(item);
+		inFlight.incrementAndGet();
+		CompletableFuture<Void> written;
+		try {
+			written = publish ? eventBus.publishAsync(address, item) : eventBus.sendAsync(address, item);
+		} catch (RuntimeException e) {
+			written = new CompletableFuture<>();
+			written.completeExceptionally(e);
+		}
+		written.whenComplete((v, e) -> {
+			if (e == null) {
+				credit.incrementAndGet();
+			} else {
+				failure.compareAndSet(null, e);
+			}
+			inFlight.decrementAndGet();
+			drain();
+		});
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		Objects.requireNonNull(throwable);
+		failure.compareAndSet(null, throwable);
+		upstreamDone = true;
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		upstreamDone = true;
+		drain();
+	}
+
+	/**
+	 * Requests the returned credit, cancels after a failed write and signals completion, on one thread at a time.
+	 */
+	private void drain() {
+		if (wip.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			Throwable cause = failure.get();
+			boolean done = upstreamDone;
+			if (cause != null && !done && !cancelled) {
+				cancelled = true;
+				subscription.cancel();
+			}
+			if (cause == null && !done) {
+				long n = credit.getAndSet(0);
+				if (n > 0) {
+					subscription.request(n);
+				}
+			}
+			if ((done || cancelled) && inFlight.get() == 0) {
+				if (cause == null) {
+					completion.complete(null);
+				} else {
+					completion.completeExceptionally(cause);
+				}
+			}
+			missed = wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+/**
+ * Bounded multi-producer queue of outbound frames drained by a single writer thread, which hands frames to the
+ * socket in batches and flushes once per batch.
+ */
+final class OutboundQueue {
+	private final BlockingQueue<OutboundFrame> queue;
+	private final OverflowPolicy overflowPolicy;
+	private final int flushBatchSize;
+	private final long flushIntervalNanos;
+	private final Consumer<OutboundFrame> sender;
+	private final Runnable flusher;
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	OutboundQueue(EventBusOptions options, Consumer<OutboundFrame> sender, Runnable flusher) {
+		this.queue = new ArrayBlockingQueue<>(options.getSendQueueCapacity());
+		this.overflowPolicy = options.getSendQueueOverflowPolicy();
+		this.flushBatchSize = options.getFlushBatchSize();
+		this.flushIntervalNanos = TimeUnit.MICROSECONDS.toNanos(options.getFlushIntervalMicros());
+		this.sender = sender;
+		this.flusher = flusher;
+		this.writer = new Thread(this::drain, "eventbus-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	void close(long timeoutMillis) {
+		running = false;
+		writer.interrupt();
+		try {
+			writer.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<OutboundFrame> remaining = new ArrayList<>();
+		queue.drainTo(remaining);
+		remaining.forEach(frame -> frame.fail(new IllegalStateException("Connection closed before frame was sent")));
+	}
+
+	private void drain() {
+		List<OutboundFrame> batch = new ArrayList<>(flushBatchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				OutboundFrame first = running ? queue.take() : queue.poll();
+				if (first == null) {
+					break;
+				}
+				send(first);
+				int count = 1;
+				long deadline = System.nanoTime() + flushIntervalNanos;
+				while (count < flushBatchSize) {
+					count += queue.drainTo(batch, flushBatchSize - count);
+					batch.forEach(this::send);
+					batch.clear();
+					long remaining = deadline - System.nanoTime();
+					if (count >= flushBatchSize || remaining <= 0 || !running) {
+						break;
+					}
+					OutboundFrame next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					send(next);
+					count++;
+				}
+				flusher.run();
+			} catch (InterruptedException e) {
+				// closing, drain what is left without waiting
+			}
+		}
+		flusher.run();
+	}
+
+	void offer(OutboundFrame frame) {
+		if (!running) {
+			throw new IllegalStateException("Connection is not currently open");
+		}
+		switch (overflowPolicy) {
+			case BLOCK:
+				try {
+					queue.put(frame);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException(e);
+				}
+				break;
+			case DROP_OLDEST:
+				while (!queue.offer(frame)) {
+					OutboundFrame dropped = queue.poll();
+					if (dropped != null) {
+						dropped.fail(new IllegalStateException("Frame dropped from full send queue"));
+					}
+				}
+				break;
+			case FAIL_FAST:
+				if (!queue.offer(frame)) {
+					throw new IllegalStateException("Send queue is full");
+				}
+				break;
+		}
+	}
+
+	int size() {
+		return queue.size();
+	}
+
+	private void send(OutboundFrame frame) {
+		try {
+			sender.accept(frame);
+		} catch (RuntimeException e) {
+			frame.fail(e);
+		}
+	}
+
+	static final class OutboundFrame {
+		final WebSocketFrame frame;
+		final CompletableFuture<Void> written;
+
+		OutboundFrame(WebSocketFrame frame, CompletableFuture<Void> written) {
+			this.frame = frame;
+			this.written = written;
+		}
+
+		void fail(Throwable cause) {
+			if (written != null) {
+				written.completeExceptionally(cause);
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+/**
+ * What to do when a bounded queue is full.
+ */
+public enum OverflowPolicy {
+	/**
+	 * Block the caller until there is room in the queue.
+	 */
+	BLOCK,
+	/**
+	 * Discard the oldest queued element to make room for the new one.
+	 */
+	DROP_OLDEST,
+	/**
+	 * Reject the new element immediately with an {@link IllegalStateException}.
+	 */
+	FAIL_FAST
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Pending replies of one connection. Reply addresses are a random per-connection prefix followed by a counter, so
+ * creating one needs no {@link java.security.SecureRandom} and looking one up parses the counter back instead of
+ * hashing the whole string. Entries live in lock striped primitive keyed maps, one slot per request holding its
+ * handlers and timeout. A positive capacity bounds the entries and fails {@link #put(PendingReply)} once it is reached.
+ * It also sizes every map up front for its share of the capacity, so the maps do not rehash while the pending
+ * requests stay spread over the stripes, as consecutive ids are.
+ */
+final class PendingReplies {
+	private static final int STRIPES = 16;
+
+	// the Vert.x bridge rejects reply addresses longer than 36 characters
+	private final String prefix = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36) + ".";
+	private final AtomicLong counter = new AtomicLong();
+	private final AtomicInteger size = new AtomicInteger();
+	private final LongObjectHashMap<PendingReply>[] stripes = newStripes();
+	private final int capacity;
+
+	PendingReplies(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative");
+		}
+		this.capacity = capacity;
+		// counter ids spread evenly over the stripes, so each one holds a sixteenth of the entries
+		int stripeCapacity = capacity > 0 ? (capacity + STRIPES - 1) / STRIPES : 64;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new LongObjectHashMap<>(stripeCapacity);
+		}
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static LongObjectHashMap<PendingReply>[] newStripes() {
+		return new LongObjectHashMap[STRIPES];
+	}
+
+	int capacity() {
+		return capacity;
+	}
+
+	String address(long id) {
+		return prefix + id;
+	}
+
+	void drain(Consumer<PendingReply> consumer) {
+		List<PendingReply> drained = new ArrayList<>();
+		for (LongObjectHashMap<PendingReply> stripe : stripes) {
+			synchronized (stripe) {
+				size.addAndGet(-stripe.size());
+				stripe.drain(drained::add);
+			}
+		}
+		drained.forEach(consumer);
+	}
+
+	long put(PendingReply reply) {
+		int reserved = size.incrementAndGet();
+		if (capacity > 0 && reserved > capacity) {
+			size.decrementAndGet();
+			throw new IllegalStateException(capacity + " replies are already pending");
+		}
+		long id = counter.incrementAndGet();
+		LongObjectHashMap<PendingReply> stripe = stripe(id);
+		synchronized (stripe) {
+			stripe.put(id, reply);
+		}
+		return id;
+	}
+
+	PendingReply remove(long id) {
+		LongObjectHashMap<PendingReply> stripe = stripe(id);
+		PendingReply reply;
+		synchronized (stripe) {
+			reply = stripe.remove(id);
+		}
+		if (reply != null) {
+			size.decrementAndGet();
+		}
+		return reply;
+	}
+
+	PendingReply remove(String address) {
+		long id = parseId(address);
+		return id > 0 ? remove(id) : null;
+	}
+
+	int size() {
+		return size.get();
+	}
+
+	/**
+	 * Slots allocated by the maps of all stripes.
+	 */
+	int tableSize() {
+		int tableSize = 0;
+		for (LongObjectHashMap<PendingReply> stripe : stripes) {
+			synchronized (stripe) {
+				tableSize += stripe.tableSize();
+			}
+		}
+		return tableSize;
+	}
+
+	private long parseId(String address) {
+		int length = address.length();
+		int start = prefix.length();
+		if (length <= start || length > start + 19 || !address.startsWith(prefix)) {
+			return -1;
+		}
+		long id = 0;
+		for (int i = start; i < length; i++) {
+			char c = address.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			id = id * 10 + (c - '0');
+		}
+		return id;
+	}
+
+	private LongObjectHashMap<PendingReply> stripe(long id) {
+		return stripes[(int) (id & (STRIPES - 1))];
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+final class PendingReply {
+	final Consumer<Message> handler;
+	final BiConsumer<Message, Throwable> errorHandler;
+	volatile HashedWheelTimer.Timeout timeout;
+	long sentAt;
+
+	PendingReply(Consumer<Message> handler, BiConsumer<Message, Throwable> errorHandler) {
+		this.handler = handler;
+		this.errorHandler = errorHandler;
+	}
+
+	void cancelTimeout() {
+		Optional.ofNullable(timeout).ifPresent(HashedWheelTimer.Timeout::cancel);
+	}
+
+	void fail(Throwable cause) {
+		if (errorHandler != null) {
+			errorHandler.accept(new Message(-1, cause.getClass().getSimpleName(), cause.getMessage()), cause);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+/**
+ * Failure reply sent by the event bus bridge, e.g. because there was no handler for the address.
+ */
+public class ReplyException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	private final int failureCode;
+	private final String failureType;
+
+	public ReplyException(int failureCode, String failureType, String message) {
+		super(message);
+		this.failureCode = failureCode;
+		this.failureType = failureType;
+	}
+
+	public int getFailureCode() {
+		return failureCode;
+	}
+
+	public String getFailureType() {
+		return failureType;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AddressTrieTest {
+	private final AddressTrie trie = new AddressTrie();
+
+	private List<String> match(String address) {
+		List<String> matched = new ArrayList<>();
+		trie.match(address, matched::add);
+		return matched;
+	}
+
+	@Test
+	public void testIsPattern() {
+		assertThat(AddressTrie.isPattern("orders.*.updated")).isTrue();
+		assertThat(AddressTrie.isPattern("orders.>")).isTrue();
+		assertThat(AddressTrie.isPattern(">")).isTrue();
+		assertThat(AddressTrie.isPattern("*")).isTrue();
+		assertThat(AddressTrie.isPattern("orders.updated")).isFalse();
+		assertThat(AddressTrie.isPattern("orders.>.updated")).isFalse();
+		assertThat(AddressTrie.isPattern("orders*")).isFalse();
+		assertThat(AddressTrie.isPattern("orders.**")).isFalse();
+		assertThat(AddressTrie.isPattern("")).isFalse();
+	}
+
+	@Test
+	public void testMatch() {
+		trie.add("orders.*.updated");
+		trie.add("orders.>");
+		trie.add("*.42.*");
+
+		assertThat(match("orders.42.updated")).containsExactlyInAnyOrder("orders.*.updated", "orders.>", "*.42.*");
+		assertThat(match("orders.7.updated")).containsExactlyInAnyOrder("orders.*.updated", "orders.>");
+		assertThat(match("orders.7.updated.late")).containsExactly("orders.>");
+		assertThat(match("orders")).isEmpty();
+		assertThat(match("invoices.42.updated")).containsExactly("*.42.*");
+		assertThat(trie.matches("invoices.1.updated")).isFalse();
+	}
+
+	@Test
+	public void testRemove() {
+		trie.add("orders.>");
+		trie.add("orders.*");
+
+		trie.remove("orders.>");
+		assertThat(match("orders.1")).containsExactly("orders.*");
+		assertThat(match("orders.1.updated")).isEmpty();
+
+		trie.remove("orders.*");
+		assertThat(trie.isEmpty()).isTrue();
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchTest {
+	private final List<String> received = new CopyOnWriteArrayList<>();
+	private final List<String> errors = new CopyOnWriteArrayList<>();
+	private final AtomicInteger framesSent = new AtomicInteger();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private WebSocket webSocket;
+	private EventBus eventBus;
+
+	@After
+	public void after() {
+		eventBus.close();
+		TestHelper.stopServer();
+	}
+
+	@Before
+	public void before() throws Exception {
+		BatchBridgeHandler[] batchBridgeHandler = new BatchBridgeHandler[1];
+		String address = TestHelper.startServer(event -> batchBridgeHandler[0].handle(event));
+		batchBridgeHandler[0] = new BatchBridgeHandler(TestHelper.vertx.eventBus(), TestHelper.bridgeOptions());
+		TestHelper.vertx.eventBus().consumer("test-address", event -> received.add(String.valueOf(event.body())));
+		TestHelper.vertx.eventBus().consumer("test-address-denied", event -> received.add(String.valueOf(event.body())));
+		webSocket = new WebSocketFactory().createSocket(address);
+		webSocket.addListener(new WebSocketAdapter() {
+			@Override
+			public void onFrameSent(WebSocket ws, WebSocketFrame frame) {
+				if (frame.isBinaryFrame()) {
+					framesSent.incrementAndGet();
+					bytesSent.addAndGet(frame.getPayloadLength());
+				}
+			}
+
+			@Override
+			public void onBinaryMessage(WebSocket ws, byte[] binary) {
+				String text = new String(binary, StandardCharsets.UTF_8);
+				if (text.contains("\"err\"")) {
+					errors.add(text);
+				}
+			}
+		});
+		eventBus = EventBus.newInstance(webSocket, new ObjectMapper(), new EventBusOptions()).openSync();
+	}
+
+	private void awaitReceived(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (received.size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(received).hasSize(count);
+	}
+
+	@Test
+	public void testBatchIsSplitByTheBridge() throws Exception {
+		List<String> bodies = IntStream.range(0, 100).mapToObj(i -> "{\"id\":" + i + "}").collect(Collectors.toList());
+		eventBus.publishBatchAsync("test-address", bodies).get(5, TimeUnit.SECONDS);
+		awaitReceived(100);
+		assertThat(received).containsExactlyElementsOf(bodies);
+		assertThat(errors).isEmpty();
+		long batchBytes = bytesSent.getAndSet(0);
+
+		received.clear();
+		bodies.forEach(body -> eventBus.publish("test-address", body));
+		awaitReceived(100);
+		assertThat(batchBytes).isLessThan(bytesSent.get() / 2);
+	}
+
+	@Test
+	public void testBatchToAnAddressNotPermittedIsDenied() throws Exception {
+		eventBus.publishBatchAsync("test-address-denied", Arrays.asList("a", "b")).get(5, TimeUnit.SECONDS);
+		eventBus.publishBatchAsync("test-address", Collections.singletonList("permitted")).get(5, TimeUnit.SECONDS);
+
+		awaitReceived(1);
+		assertThat(received).containsExactly("permitted");
+		long deadline = System.currentTimeMillis() + 5000;
+		while (errors.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(errors).hasSize(1).allMatch(error -> error.contains("access_denied"));
+	}
+
+	private void testMalformedBatchIsRejected(String frame) throws Exception {
+		webSocket.sendBinary(frame.getBytes(StandardCharsets.UTF_8));
+		eventBus.publishBatchAsync("test-address", Collections.singletonList("permitted")).get(5, TimeUnit.SECONDS);
+
+		awaitReceived(1);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (errors.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(errors).hasSize(1).allMatch(error -> error.contains("rejected"));
+	}
+
+	@Test
+	public void testBatchWithoutBodyIsRejected() throws Exception {
+		testMalformedBatchIsRejected("{\"type\":\"publish\",\"address\":\"test-address\"," +
+				"\"headers\":{\"" + BatchPublisher.BATCH_HEADER + "\":2}}");
+	}
+
+	@Test
+	public void testBatchWhoseBodyIsNotAnArrayIsRejected() throws Exception {
+		testMalformedBatchIsRejected("{\"type\":\"publish\",\"address\":\"test-address\"," +
+				"\"headers\":{\"" + BatchPublisher.BATCH_HEADER + "\":2},\"body\":\"not a batch\"}");
+	}
+
+	@Test
+	public void testBatchPublisherFlushesOnSizeAndDelay() throws Exception {
+		try (BatchPublisher publisher = new BatchPublisher(eventBus, 10, 50, TimeUnit.MILLISECONDS)) {
+			List<String> bodies = new ArrayList<>();
+			for (int i = 0; i < 25; i++) {
+				bodies.add(String.valueOf(i));
+				publisher.publish("test-address", String.valueOf(i));
+			}
+			awaitReceived(25);
+			assertThat(received).containsExactlyElementsOf(bodies);
+			assertThat(framesSent.get()).isEqualTo(3);
+		}
+	}
+
+	@Test
+	public void testInboundBatchIsDeliveredOneBodyAtATime() throws Exception {
+		List<Message> messages = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(3);
+		eventBus.registerHandler("test-address-publish-reply", message -> {
+			messages.add(message);
+			latch.countDown();
+		});
+		// the reply orders the batch after the REGISTER frame
+		eventBus.publishAsync("test-address", "sync").get(5, TimeUnit.SECONDS);
+		awaitReceived(1);
+
+		TestHelper.vertx.eventBus().publish("test-address-publish-reply", new JsonArray().add("a").add("b").add("c"),
+				new DeliveryOptions().addHeader(BatchPublisher.BATCH_HEADER, "3").addHeader("tenant", "acme"));
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(messages).extracting(Message::getBody).containsExactly("a", "b", "c");
+		assertThat(messages).allMatch(message -> message.getHeaders().equals(Collections.singletonMap("tenant", "acme")));
+	}
+}
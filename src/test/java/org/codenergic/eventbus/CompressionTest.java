@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompressionTest {
+	private static byte[] inflate(byte[] payload) throws Exception {
+		Inflater inflater = new Inflater(true);
+		byte[] input = Arrays.copyOf(payload, payload.length + 4);
+		input[input.length - 2] = (byte) 0xFF;
+		input[input.length - 1] = (byte) 0xFF;
+		inflater.setInput(input);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = inflater.inflate(buffer)) > 0) {
+			out.write(buffer, 0, read);
+		}
+		inflater.end();
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testStoredBlocksInflateToThePayload() throws Exception {
+		assertThat(DeflateBlocks.stored("Hello".getBytes()))
+				.containsExactly(0x00, 0x05, 0x00, 0xFA, 0xFF, 'H', 'e', 'l', 'l', 'o', 0x00);
+		for (int size : new int[]{0, 1, 65535, 65536, 200000}) {
+			byte[] payload = new byte[size];
+			for (int i = 0; i < size; i++) {
+				payload[i] = (byte) i;
+			}
+			assertThat(inflate(DeflateBlocks.stored(payload))).isEqualTo(payload);
+		}
+	}
+
+	@Test
+	public void testFramesAreDeflatedFromThreshold() throws Exception {
+		WebSocket webSocket = new WebSocketFactory().createSocket(TestHelper.startServer());
+		List<WebSocketFrame> sent = new CopyOnWriteArrayList<>();
+		webSocket.addListener(new WebSocketAdapter() {
+			@Override
+			public void onFrameSent(WebSocket ws, WebSocketFrame frame) {
+				if (frame.isBinaryFrame()) {
+					sent.add(frame);
+				}
+			}
+		});
+		TestHelper.vertx.eventBus().consumer("test-address", event -> event.reply(event.body()));
+		EventBus eventBus = EventBus.newInstance(webSocket, new ObjectMapper(), new EventBusOptions()
+				.setCompression(true)
+				.setCompressionThreshold(1024));
+		try {
+			eventBus.openSync();
+			assertThat(webSocket.getAgreedExtensions()).extracting("name").contains("permessage-deflate");
+
+			StringBuilder large = new StringBuilder();
+			while (large.length() < 100_000) {
+				large.append("{\"id\":").append(large.length()).append(",\"status\":\"pending\"},");
+			}
+			assertThat(eventBus.request("test-address", "small").get(5, TimeUnit.SECONDS).getBody()).isEqualTo("small");
+			assertThat(eventBus.request("test-address", large.toString()).get(5, TimeUnit.SECONDS).getBody())
+					.isEqualTo(large.toString());
+
+			assertThat(sent).allMatch(WebSocketFrame::getRsv1);
+			assertThat(sent).anyMatch(frame -> frame.getPayloadLength() < 10_000);
+			assertThat(sent).noneMatch(frame -> frame.getPayloadLength() > 10_000);
+		} finally {
+			eventBus.close();
+			TestHelper.stopServer();
+		}
+	}
+}
@@ -15,14 +15,26 @@
  */
 package org.codenergic.eventbus;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class ConnectionTest {
 	private String connectionAddress;
@@ -44,6 +56,155 @@ public class ConnectionTest {
 		eventBus.close();
 	}
 
+	@Test
+	public void testInjectedSchedulerIsSharedAndClosed() throws Exception {
+		EventBusScheduler scheduler = new EventBusScheduler();
+		EventBus first = EventBus.newInstance(connectionAddress, new EventBusOptions().setScheduler(scheduler));
+		EventBus second = EventBus.newInstance(connectionAddress, new EventBusOptions().setScheduler(scheduler));
+		first.open().get(5, TimeUnit.SECONDS);
+		second.open().get(5, TimeUnit.SECONDS);
+
+		Set<Thread> threads = Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().startsWith("eventbus-"))
+				.collect(Collectors.toSet());
+		assertThat(threads).allMatch(Thread::isDaemon);
+
+		first.close();
+		second.close();
+		scheduler.close();
+		assertThatThrownBy(() -> EventBusScheduler.shared().close()).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void testIdleQueuedConnectionStaysOpen() throws Exception {
+		TestHelper.stopServer();
+		connectionAddress = TestHelper.startServer(TestHelper.bridgeOptions().setPingTimeout(1500), event -> event.complete(true));
+		CountDownLatch closed = new CountDownLatch(1);
+		EventBus eventBus = EventBus.newInstance(connectionAddress, new EventBusOptions()
+				.setSendQueueCapacity(16)
+				.setPingInterval(300));
+		eventBus.onClose(eb -> closed.countDown());
+		eventBus.openSync();
+
+		// nothing is sent but the pings, which must still reach the bridge before its ping timeout
+		assertThat(closed.await(4, TimeUnit.SECONDS)).isFalse();
+		eventBus.close();
+	}
+
+	@Test
+	public void testSlowTimeoutCallbackDoesNotDelayOtherEventBuses() throws Exception {
+		TestHelper.vertx.eventBus().consumer("test-address", event -> {
+		});
+		CountDownLatch gate = new CountDownLatch(1);
+		EventBusScheduler scheduler = new EventBusScheduler();
+		EventBus slow = EventBus.newInstance(connectionAddress, new EventBusOptions().setScheduler(scheduler)).openSync();
+		EventBus other = EventBus.newInstance(connectionAddress, new EventBusOptions().setScheduler(scheduler)).openSync();
+		try {
+			slow.request("test-address", "slow", null, 50).whenComplete((message, e) -> {
+				try {
+					gate.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			CompletableFuture<Message> reply = other.request("test-address", "other", null, 200);
+
+			assertThatThrownBy(() -> reply.get(2, TimeUnit.SECONDS))
+					.isInstanceOf(ExecutionException.class)
+					.hasCauseInstanceOf(TimeoutException.class);
+		} finally {
+			gate.countDown();
+			slow.close();
+			other.close();
+			scheduler.close();
+		}
+	}
+
+	@Test
+	public void testCloseLeavesNoScheduledTasks() throws Exception {
+		TestHelper.vertx.eventBus().consumer("test-address", event -> {
+		});
+		EventBusScheduler scheduler = new EventBusScheduler();
+		EventBus eventBus = EventBus.newInstance(connectionAddress, new EventBusOptions().setScheduler(scheduler));
+		eventBus.registerHandler("test-address-local", message -> {
+		});
+		eventBus.open().get(5, TimeUnit.SECONDS);
+		CompletableFuture<Message> reply = eventBus.request("test-address", "pending", null, 60_000);
+		assertThat(scheduler.scheduledTasks()).isGreaterThan(0);
+
+		eventBus.close();
+		assertThat(scheduler.scheduledTasks()).isZero();
+		assertThat(reply).isCompletedExceptionally();
+		scheduler.close();
+	}
+
+	@Test
+	public void testTimeoutBurstRunsOnBoundedCallbackThreads() throws Exception {
+		TestHelper.vertx.eventBus().consumer("test-address", event -> {
+		});
+		EventBusScheduler scheduler = new EventBusScheduler();
+		EventBus eventBus = EventBus.newInstance(connectionAddress, new EventBusOptions().setScheduler(scheduler));
+		eventBus.open().get(5, TimeUnit.SECONDS);
+		CountDownLatch gate = new CountDownLatch(1);
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		AtomicInteger timedOut = new AtomicInteger();
+		for (int i = 0; i < 50; i++) {
+			eventBus.request("test-address", "pending-" + i, null, 100).whenComplete((message, error) -> {
+				threads.add(Thread.currentThread().getName());
+				timedOut.incrementAndGet();
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (timedOut.get() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(300);
+		assertThat(timedOut.get()).isBetween(2, Math.max(2, Runtime.getRuntime().availableProcessors()));
+		assertThat(threads).allMatch(name -> name.startsWith("eventbus-callback-"));
+		gate.countDown();
+		deadline = System.currentTimeMillis() + 5000;
+		while (timedOut.get() < 50 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(timedOut.get()).isEqualTo(50);
+		eventBus.close();
+		scheduler.close();
+	}
+
+	@Test
+	public void testOpenCompletesAfterEarlyRegistrationsAreProcessed() throws Exception {
+		List<String> addresses = Arrays.asList("test-address-reply", "test-address-publish-reply", "test-address-local");
+		List<String> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(addresses.size() * 2);
+		EventBus eventBus = EventBus.newInstance(connectionAddress, new EventBusOptions().setConnections(2));
+		for (String address : addresses) {
+			eventBus.registerHandler(address, message -> {
+				received.add(message.getAddress() + "=" + message.getBody());
+				latch.countDown();
+			});
+		}
+
+		eventBus.open().get(5, TimeUnit.SECONDS);
+		// no round trip in between: the test bridge handles REGISTER frames synchronously, so they are in place once
+		// the barrier is answered
+		for (String address : addresses) {
+			TestHelper.vertx.eventBus().publish(address, "published");
+			TestHelper.vertx.eventBus().send(address, "sent");
+		}
+
+		latch.await(5, TimeUnit.SECONDS);
+		assertThat(received).containsExactlyInAnyOrder(addresses.stream()
+				.flatMap(address -> Stream.of(address + "=published", address + "=sent"))
+				.toArray(String[]::new));
+		eventBus.close();
+	}
+
 	@Test
 	public void testOpenAndCloseConnectionSynchronously() throws Exception {
 		final CountDownLatch latch = new CountDownLatch(2);
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DispatchTest {
+	private ExecutorService executor;
+	private EventBus eventBus;
+
+	@After
+	public void after() {
+		eventBus.close();
+		executor.shutdownNow();
+		TestHelper.stopServer();
+	}
+
+	@Before
+	public void before() throws Exception {
+		executor = Executors.newFixedThreadPool(4);
+		eventBus = EventBus.newInstance(TestHelper.startServer(), new EventBusOptions().setDispatchExecutor(executor)).openSync();
+		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
+		eb.consumer("test-address", event -> {
+			eb.publish("test-address-publish-reply", event.body());
+			eb.send("test-address-reply", event.body());
+		});
+	}
+
+	@Test
+	public void testMessagesOfOneAddressKeepTheirOrder() throws InterruptedException {
+		List<String> bodies = IntStream.range(0, 200).mapToObj(String::valueOf).collect(Collectors.toList());
+		CountDownLatch latch = new CountDownLatch(bodies.size());
+		List<String> received = Collections.synchronizedList(new ArrayList<>());
+		List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+		eventBus.registerHandler("test-address-publish-reply", message -> {
+			received.add(message.getBody());
+			threads.add(Thread.currentThread().getName());
+			latch.countDown();
+		});
+		bodies.forEach(body -> eventBus.send("test-address", body));
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(received).containsExactlyElementsOf(bodies);
+		assertThat(threads).allMatch(name -> name.startsWith("pool-"));
+	}
+
+	@Test
+	public void testIdleMailboxesAreRemoved() throws InterruptedException {
+		AtomicInteger delivered = new AtomicInteger();
+		MessageDispatcher dispatcher = new MessageDispatcher(new EventBusOptions().setDispatchExecutor(executor),
+				message -> delivered.incrementAndGet(), (message, e) -> {
+		});
+		// like the addresses a pattern such as orders.*.updated matches, each seen once
+		for (int i = 0; i < 1000; i++) {
+			dispatcher.dispatch(new Message(Message.MessageType.PUBLISH, "orders." + i + ".updated", null, "updated"));
+		}
+		awaitIdle(dispatcher, delivered, 1000);
+
+		// an address whose mailbox was retired gets a new one
+		dispatcher.dispatch(new Message(Message.MessageType.PUBLISH, "orders.1.updated", null, "again"));
+		awaitIdle(dispatcher, delivered, 1001);
+	}
+
+	private static void awaitIdle(MessageDispatcher dispatcher, AtomicInteger delivered, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((delivered.get() < count || dispatcher.mailboxCount() > 0) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(delivered.get()).isEqualTo(count);
+		assertThat(dispatcher.mailboxCount()).isZero();
+		assertThat(dispatcher.queueDepth()).isZero();
+	}
+
+	@Test
+	public void testSlowHandlerDoesNotBlockOtherAddresses() throws InterruptedException {
+		CountDownLatch gate = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch replied = new CountDownLatch(1);
+
+		eventBus.registerHandler("test-address-publish-reply", message -> {
+			started.countDown();
+			try {
+				gate.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		eventBus.registerHandler("test-address-reply", message -> replied.countDown());
+		eventBus.send("test-address", "first");
+		eventBus.send("test-address", "second");
+
+		assertThat(replied.await(2, TimeUnit.SECONDS)).isTrue();
+		// the first message leaves the mailbox once its handler runs, only the second may still be queued
+		assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+		assertThat(eventBus.getDispatchQueueDepth("test-address-publish-reply")).isLessThanOrEqualTo(1);
+		gate.countDown();
+	}
+
+	private static Consumer<Message> blockUntil(CountDownLatch gate) {
+		return message -> {
+			try {
+				gate.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+	}
+
+	@Test
+	public void testIsolatedHandlerDoesNotDelayOtherHandlersOfTheAddress() throws InterruptedException {
+		ExecutorService analytics = Executors.newSingleThreadExecutor();
+		CountDownLatch gate = new CountDownLatch(1);
+		CountDownLatch received = new CountDownLatch(10);
+		try {
+			eventBus.registerHandler("test-address-publish-reply", null, new HandlerOptions().setExecutor(analytics),
+					blockUntil(gate), null);
+			eventBus.registerHandler("test-address-publish-reply", message -> received.countDown());
+			for (int i = 0; i < 10; i++) {
+				eventBus.send("test-address", String.valueOf(i));
+			}
+
+			assertThat(received.await(2, TimeUnit.SECONDS)).isTrue();
+		} finally {
+			gate.countDown();
+			analytics.shutdown();
+		}
+	}
+
+	@Test
+	public void testFullHandlerQueueRejectsMessages() throws InterruptedException {
+		ExecutorService analytics = Executors.newSingleThreadExecutor();
+		CountDownLatch gate = new CountDownLatch(1);
+		CountDownLatch rejected = new CountDownLatch(2);
+		try {
+			eventBus.registerHandler("test-address-publish-reply", null, new HandlerOptions()
+					.setExecutor(analytics)
+					.setQueueCapacity(2)
+					.setOverflowPolicy(OverflowPolicy.FAIL_FAST), blockUntil(gate), (message, cause) -> rejected.countDown());
+			for (int i = 0; i < 5; i++) {
+				eventBus.send("test-address", String.valueOf(i));
+			}
+
+			assertThat(rejected.await(2, TimeUnit.SECONDS)).isTrue();
+		} finally {
+			gate.countDown();
+			analytics.shutdown();
+		}
+	}
+
+	@Test
+	public void testHandlerConcurrencyIsCapped() throws InterruptedException {
+		ExecutorService analytics = Executors.newFixedThreadPool(8);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch handled = new CountDownLatch(12);
+		try {
+			eventBus.registerHandler("test-address-publish-reply", null, new HandlerOptions()
+					.setExecutor(analytics)
+					.setMaxConcurrency(3), message -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				handled.countDown();
+			}, null);
+			for (int i = 0; i < 12; i++) {
+				eventBus.send("test-address", String.valueOf(i));
+			}
+
+			assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(maxRunning.get()).isBetween(2, 3);
+		} finally {
+			analytics.shutdown();
+		}
+	}
+}
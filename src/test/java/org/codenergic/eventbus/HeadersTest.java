@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class HeadersTest {
+	@Test
+	public void testHeadersBehaveLikeAnImmutableMap() {
+		Map<String, Object> expected = new LinkedHashMap<>();
+		expected.put("token", "123");
+		expected.put("retry", 3);
+
+		Headers headers = Headers.copyOf(expected);
+
+		assertThat(headers).isEqualTo(expected).hasSameHashCodeAs(expected);
+		assertThat(headers).containsExactly(entry("token", "123"), entry("retry", 3));
+		assertThat(headers.with("retry", 4)).containsExactly(entry("token", "123"), entry("retry", 4));
+		assertThat(headers.without("token")).containsExactly(entry("retry", 3));
+		assertThat(headers.without("missing")).isSameAs(headers);
+		assertThat(Headers.copyOf(headers)).isSameAs(headers);
+		assertThat(Headers.copyOf(null)).isSameAs(Headers.EMPTY);
+		assertThatThrownBy(() -> headers.put("tenant", "a")).isInstanceOf(UnsupportedOperationException.class);
+	}
+
+	@Test
+	public void testNullNamesAreRejected() {
+		Map<String, Object> nullName = new LinkedHashMap<>();
+		nullName.put(null, "a");
+
+		assertThatThrownBy(() -> Headers.copyOf(nullName)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Headers.of(null, "a")).isInstanceOf(IllegalArgumentException.class);
+		assertThat(Headers.EMPTY.get(null)).isNull();
+	}
+
+	@Test
+	public void testMessageKeepsTheHeadersItIsGiven() {
+		Map<String, Object> headers = new LinkedHashMap<>();
+
+		Message message = new Message(Message.MessageType.SEND, "test-address", headers, "testing");
+		headers.put("token", "123");
+
+		assertThat(message.getHeaders()).isSameAs(headers).containsEntry("token", "123");
+		assertThat(new Message(Message.MessageType.SEND, "test-address", null, "testing").getHeaders()).isEmpty();
+	}
+
+	@Test
+	public void testManyHeadersAreIndexed() {
+		Headers headers = Headers.EMPTY;
+		for (int i = 0; i < 20; i++) {
+			headers = headers.with("header-" + i, i);
+		}
+
+		assertThat(headers).hasSize(20);
+		assertThat(headers.get("header-17")).isEqualTo(17);
+		assertThat(headers.containsKey("header-20")).isFalse();
+		assertThat(headers.without("header-3").get("header-4")).isEqualTo(4);
+	}
+
+	@Test
+	public void testDecodedKeysAreInterned() {
+		String key = new String("trace-id".toCharArray());
+
+		Headers headers = Headers.decoded(new String[]{key, "tenant", "trace-id"}, new Object[]{"a", "b", "c"}, 3);
+
+		assertThat(headers).containsExactly(entry("trace-id", "c"), entry("tenant", "b"));
+		assertThat(headers.keySet().iterator().next()).isSameAs(Headers.intern("trace-id"));
+	}
+}
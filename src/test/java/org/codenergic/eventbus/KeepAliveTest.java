@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeepAliveTest {
+	@Test
+	public void testResponsiveServerIsKeptOpen() throws Exception {
+		WebSocket webSocket = new WebSocketFactory().createSocket(TestHelper.startServer());
+		AtomicInteger pings = new AtomicInteger();
+		webSocket.addListener(new WebSocketAdapter() {
+			@Override
+			public void onFrameSent(WebSocket ws, WebSocketFrame frame) {
+				if (frame.isBinaryFrame() && frame.getPayloadText().contains("ping")) {
+					pings.incrementAndGet();
+				}
+			}
+		});
+		EventBus eventBus = EventBus.newInstance(webSocket, new ObjectMapper(), new EventBusOptions()
+				.setPingInterval(100)
+				.setSilenceTimeout(300));
+		CountDownLatch closed = new CountDownLatch(1);
+		eventBus.onClose(eb -> closed.countDown());
+		try {
+			eventBus.openSync();
+			assertThat(closed.await(1, TimeUnit.SECONDS)).isFalse();
+			assertThat(pings.get()).isBetween(5, 11);
+		} finally {
+			eventBus.close();
+			TestHelper.stopServer();
+		}
+	}
+
+	@Test
+	public void testSilentServerIsDetected() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			Thread acceptor = new Thread(() -> acceptAndGoSilent(server));
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			EventBus eventBus = EventBus.newInstance("ws://127.0.0.1:" + server.getLocalPort() + "/eventbus/websocket",
+					new EventBusOptions().setPingInterval(100).setSilenceTimeout(300));
+			CountDownLatch closed = new CountDownLatch(1);
+			eventBus.onClose(eb -> closed.countDown());
+			try {
+				eventBus.openSync();
+				assertThat(closed.await(3, TimeUnit.SECONDS)).isTrue();
+			} finally {
+				eventBus.close();
+			}
+		}
+	}
+
+	/**
+	 * Completes the opening handshake and then reads without ever answering, like a peer behind a dead link.
+	 */
+	private static void acceptAndGoSilent(ServerSocket server) {
+		try (Socket socket = server.accept()) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+			String key = null;
+			for (String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine()) {
+				if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+					key = line.substring(line.indexOf(':') + 1).trim();
+				}
+			}
+			byte[] digest = MessageDigest.getInstance("SHA-1")
+					.digest((key + "258EAFA5-E914-47DA-95CA-C5AB0DC85B11").getBytes(StandardCharsets.ISO_8859_1));
+			OutputStream out = socket.getOutputStream();
+			out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+					+ "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(digest) + "\r\n\r\n")
+					.getBytes(StandardCharsets.ISO_8859_1));
+			out.flush();
+			while (reader.read() != -1) {
+				// discard
+			}
+		} catch (Exception e) {
+			// the client hung up
+		}
+	}
+}
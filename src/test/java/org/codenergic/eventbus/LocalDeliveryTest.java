@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LocalDeliveryTest {
+	private final List<Object> remote = new CopyOnWriteArrayList<>();
+	private EventBus eventBus;
+
+	@After
+	public void after() {
+		eventBus.close();
+		TestHelper.stopServer();
+	}
+
+	private void start(EventBusOptions options) throws Exception {
+		eventBus = EventBus.newInstance(TestHelper.startServer(), options).openSync();
+		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
+		eb.consumer("test-address", event -> {
+			remote.add(event.body());
+			event.reply(event.body());
+		});
+		eb.consumer("test-address-local", event -> remote.add(event.body()));
+	}
+
+	@Test
+	public void testLocalDeliveryHandsOverTheBody() throws Exception {
+		start(new EventBusOptions()
+				.setPublishDelivery(LocalDelivery.LOCAL)
+				.setSendDelivery(LocalDelivery.LOCAL));
+		Map<String, Object> body = Collections.singletonMap("id", 42);
+		List<Message> received = new CopyOnWriteArrayList<>();
+		eventBus.registerHandler("test-address", received::add);
+
+		eventBus.publish("test-address", body);
+		eventBus.sendAsync("test-address", "local").get(5, TimeUnit.SECONDS);
+		// requests always go through the server, which orders them after anything forwarded before
+		eventBus.request("test-address", "remote").get(5, TimeUnit.SECONDS);
+
+		assertThat(remote).containsExactly("remote");
+		assertThat(received).hasSize(2);
+		assertThat(received).extracting(Message::getType).containsOnly("rec");
+		assertThat((Object) received.get(0).getBody(Map.class)).isSameAs(body);
+		assertThat(received.get(0).getBody()).isEqualTo("{\"id\":42}");
+		assertThat(received.get(0).getBodyAsTree().get("id").intValue()).isEqualTo(42);
+		assertThat(received.get(1).getBody()).isEqualTo("local");
+	}
+
+	@Test
+	public void testPoolDeliversLocallyOnTheHandlersConnection() throws Exception {
+		start(new EventBusOptions()
+				.setConnections(4)
+				.setPublishDelivery(LocalDelivery.LOCAL)
+				.setSendDelivery(LocalDelivery.LOCAL));
+		List<Object> received = new CopyOnWriteArrayList<>();
+		eventBus.registerHandler("test-address", message -> received.add(message.getBody()));
+
+		for (int i = 0; i < 8; i++) {
+			eventBus.publishAsync("test-address", "publish-" + i).get(5, TimeUnit.SECONDS);
+			eventBus.sendAsync("test-address", "send-" + i).get(5, TimeUnit.SECONDS);
+		}
+		eventBus.request("test-address", "remote").get(5, TimeUnit.SECONDS);
+
+		assertThat(remote).containsExactly("remote");
+		assertThat(received).hasSize(16);
+	}
+
+	@Test
+	public void testLocalAndRemoteDropsTheEcho() throws Exception {
+		start(new EventBusOptions().setPublishDelivery(LocalDelivery.LOCAL_AND_REMOTE));
+		List<String> received = new CopyOnWriteArrayList<>();
+		CompletableFuture<Void> synced = new CompletableFuture<>();
+		eventBus.registerHandler("test-address-local", message -> {
+			received.add(message.getBody());
+			if ("sync".equals(message.getBody())) {
+				synced.complete(null);
+			}
+		});
+
+		eventBus.publish("test-address-local", "hello");
+		eventBus.request("test-address", "registered").get(5, TimeUnit.SECONDS);
+		TestHelper.vertx.eventBus().publish("test-address-local", "sync");
+		synced.get(5, TimeUnit.SECONDS);
+		// the server's own consumer may get the message after the bridge has passed it on
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!remote.contains("sync") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertThat(remote).contains("hello", "sync");
+		assertThat(received).containsExactly("hello", "sync");
+	}
+
+	@Test
+	public void testAddressesWithoutLocalHandlersGoRemote() throws Exception {
+		start(new EventBusOptions().setSendDelivery(LocalDelivery.LOCAL));
+
+		eventBus.sendAsync("test-address", "remote").get(5, TimeUnit.SECONDS);
+		eventBus.request("test-address", "sync").get(5, TimeUnit.SECONDS);
+
+		assertThat(remote).containsExactly("remote", "sync");
+		assertThatThrownBy(() -> new EventBusOptions().setSendDelivery(LocalDelivery.LOCAL_AND_REMOTE))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongObjectHashMapTest {
+	@Test
+	public void testBehavesLikeHashMap() {
+		LongObjectHashMap<String> map = new LongObjectHashMap<>(4);
+		Map<Long, String> expected = new HashMap<>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 100_000; i++) {
+			long key = 1 + random.nextInt(2_000);
+			if (random.nextBoolean()) {
+				assertThat(map.put(key, "v" + i)).isEqualTo(expected.put(key, "v" + i));
+			} else {
+				assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+			}
+			assertThat(map.size()).isEqualTo(expected.size());
+		}
+		expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+
+		Map<String, String> drained = new HashMap<>();
+		map.drain(value -> drained.put(value, value));
+		assertThat(drained.keySet()).containsExactlyInAnyOrderElementsOf(expected.values());
+		assertThat(map.size()).isZero();
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(Parameterized.class)
+public class MessageCodecTest {
+	@Parameterized.Parameter
+	public String name;
+	@Parameterized.Parameter(1)
+	public MessageCodec messageCodec;
+
+	@Parameterized.Parameters(name = "{0}")
+	public static Collection<Object[]> codecs() {
+		return Arrays.asList(
+				new Object[]{"json", new JacksonMessageCodec(new ObjectMapper())},
+				new Object[]{"cbor", new JacksonMessageCodec(new ObjectMapper(new CBORFactory()))},
+				new Object[]{"compact", new CompactMessageCodec(new ObjectMapper())});
+	}
+
+	@Test
+	public void testStringBodyRoundTrip() throws Exception {
+		Map<String, Object> headers = new LinkedHashMap<>();
+		headers.put("token", "123");
+		headers.put("retry", 3);
+		headers.put("sequence", 1L << 40);
+		headers.put("urgent", true);
+		headers.put("tags", Arrays.asList("a", "b"));
+		headers.put("none", null);
+
+		Message message = messageCodec.decode(messageCodec.encode(Message.MessageType.SEND, "test-address", headers,
+				"hello \"w\u00f6rld\"", "reply"));
+
+		assertThat(message.getAddress()).isEqualTo("test-address");
+		assertThat(message.getType()).isEqualTo("send");
+		assertThat(message.getHeaders()).isInstanceOf(Headers.class).isEqualTo(headers);
+		assertThat(message.getBody()).isEqualTo("hello \"w\u00f6rld\"");
+		assertThat(message.getReplyAddress()).isEqualTo("reply");
+	}
+
+	@Test
+	public void testReusedHeadersRoundTrip() throws Exception {
+		Headers headers = Headers.of("token", "123", "retry", 3);
+
+		// the first send writes the headers directly, the later ones reuse their kept form
+		for (int i = 0; i < 3; i++) {
+			Message message = messageCodec.decode(messageCodec.encode(Message.MessageType.SEND, "test-address", headers,
+					"hello", null));
+
+			assertThat(message.getHeaders()).isEqualTo(headers);
+			assertThat(message.getBody()).isEqualTo("hello");
+		}
+	}
+
+	@Test
+	public void testObjectBodyRoundTrip() throws Exception {
+		Message message = messageCodec.decode(messageCodec.encode(Message.MessageType.PUBLISH, "test-address", null,
+				Collections.singletonMap("id", 1), null));
+
+		assertThat(message.getType()).isEqualTo("publish");
+		assertThat(message.getBody(Map.class).get("id")).isEqualTo(1);
+		assertThat(message.getBody()).isEqualTo("{\"id\":1}");
+		assertThat(message.getBodyAsTree().get("id").asInt()).isEqualTo(1);
+		assertThat(message.getReplyAddress()).isNull();
+	}
+
+	@Test
+	public void testPingIsStable() {
+		assertThat(messageCodec.ping()).isSameAs(messageCodec.ping()).isNotEmpty();
+	}
+
+	@Test
+	public void testTruncatedFrameFails() throws Exception {
+		byte[] frame = messageCodec.encode(Message.MessageType.SEND, "test-address", null, "testing", null);
+
+		assertThatThrownBy(() -> messageCodec.decode(Arrays.copyOf(frame, 8))).isInstanceOf(IOException.class);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MessageDecoderTest {
+	private final MessageDecoder messageDecoder = new MessageDecoder(new ObjectMapper());
+
+	@Test
+	public void testDecodeMessage() throws Exception {
+		Message message = messageDecoder.decode(bytes("{\"type\":\"rec\",\"address\":\"test-address\"," +
+				"\"headers\":{\"token\":\"123\"},\"body\":\"hello\",\"replyAddress\":\"reply\",\"unknown\":{\"a\":[1,2]}}"));
+
+		assertThat(message.getType()).isEqualTo("rec");
+		assertThat(message.getAddress()).isEqualTo("test-address");
+		assertThat(message.getHeaders()).isEqualTo(Collections.singletonMap("token", "123"));
+		assertThat(message.getBody()).isEqualTo("hello");
+		assertThat(message.getReplyAddress()).isEqualTo("reply");
+		assertThat(message.getFailureCode()).isNull();
+	}
+
+	@Test
+	public void testDecodeFailure() throws Exception {
+		Message message = messageDecoder.decode(bytes("{\"type\":\"err\",\"address\":\"reply\"," +
+				"\"failureCode\":-1,\"failureType\":\"NO_HANDLERS\",\"message\":\"No handlers\"}"));
+
+		assertThat(message.getAddress()).isEqualTo("reply");
+		assertThat(message.getHeaders()).isNull();
+		assertThat(message.getFailureCode()).isEqualTo(-1);
+		assertThat(message.getFailureType()).isEqualTo("NO_HANDLERS");
+		assertThat(message.getFailureMessage()).isEqualTo("No handlers");
+	}
+
+	@Test
+	public void testDecodeJsonBody() throws Exception {
+		Message message = messageDecoder.decode(bytes("{\"address\":\"a\",\"body\":{\"id\":1,\"tags\":[\"x\"]}}"));
+
+		assertThat(message.getBody()).isEqualTo("{\"id\":1,\"tags\":[\"x\"]}");
+		assertThat(message.getBody(Map.class).get("id")).isEqualTo(1);
+		assertThat(message.getBodyAsTree().get("tags").get(0).asText()).isEqualTo("x");
+	}
+
+	@Test
+	public void testDecodeTypedBody() throws Exception {
+		Message number = messageDecoder.decode(bytes("{\"address\":\"a\",\"body\":42}"));
+		Message encoded = messageDecoder.decode(bytes("{\"address\":\"a\",\"body\":\"{\\\"id\\\":1}\"}"));
+
+		assertThat(number.getBody()).isEqualTo("42");
+		assertThat(number.getBody(Integer.class)).isEqualTo(42);
+		assertThat(encoded.getBody()).isEqualTo("{\"id\":1}");
+		assertThat(encoded.getBody(Map.class).get("id")).isEqualTo(1);
+	}
+
+	@Test
+	public void testDecodeLazily() throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper();
+		byte[] frame = bytes("{\"type\":\"rec\",\"address\":\"test-address\",\"headers\":{\"token\":\"123\"},\"body\":{\"id\":1}}");
+		Message message = messageDecoder.decode(frame);
+
+		assertThat(message.getAddress()).isEqualTo("test-address");
+		assertThat(objectMapper.readTree(objectMapper.writeValueAsBytes(message))).isEqualTo(objectMapper.readTree(
+				bytes("{\"type\":\"rec\",\"address\":\"test-address\",\"headers\":{\"token\":\"123\"},\"body\":\"{\\\"id\\\":1}\"}")));
+	}
+
+	@Test
+	public void testDecodeAddressOnlyForUnreadFrames() throws Exception {
+		// everything after the address is only parsed when asked for
+		Message message = messageDecoder.decode(bytes("{\"address\":\"a\",\"headers\":{\"token\":}"));
+
+		assertThat(message.getAddress()).isEqualTo("a");
+		assertThatThrownBy(message::getHeaders).isInstanceOf(IllegalStateException.class);
+	}
+
+	private static byte[] bytes(String json) {
+		return json.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageEncoderTest {
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final MessageEncoder messageEncoder = new MessageEncoder(objectMapper);
+
+	@Test
+	public void testEncodeMessage() throws Exception {
+		Map<String, Object> headers = new LinkedHashMap<>();
+		headers.put("token", "123");
+		headers.put("retry", 3);
+
+		byte[] frame = messageEncoder.encode(Message.MessageType.SEND, "test-address", headers, "hello \"world\"", "reply");
+
+		assertThat(new String(frame, StandardCharsets.UTF_8)).isEqualTo("{\"type\":\"send\",\"address\":\"test-address\"," +
+				"\"headers\":{\"token\":\"123\",\"retry\":3},\"body\":\"hello \\\"world\\\"\",\"replyAddress\":\"reply\"}");
+	}
+
+	@Test
+	public void testEncodeReusedHeaders() throws Exception {
+		Headers headers = Headers.of("token", "123", "retry", 3);
+
+		byte[] first = messageEncoder.encode(Message.MessageType.SEND, "test-address", headers, "hello", null);
+		assertThat(headers.serialized(messageEncoder.headersKey())).isNull();
+		byte[] second = messageEncoder.encode(Message.MessageType.SEND, "test-address", headers, "hello", null);
+		Object serialized = headers.serialized(messageEncoder.headersKey());
+		byte[] third = messageEncoder.encode(Message.MessageType.SEND, "test-address", headers, "hello", null);
+
+		assertThat(serialized).isNotNull();
+		assertThat(headers.serialized(messageEncoder.headersKey())).isSameAs(serialized);
+		assertThat(second).isEqualTo(first);
+		assertThat(third).isEqualTo(first);
+		assertThat(new String(first, StandardCharsets.UTF_8)).isEqualTo("{\"type\":\"send\",\"address\":\"test-address\"," +
+				"\"headers\":{\"token\":\"123\",\"retry\":3},\"body\":\"hello\"}");
+	}
+
+	@Test
+	public void testFreshHeadersAreNotKept() throws Exception {
+		Headers headers = Headers.copyOf(Collections.singletonMap("token", "123")).with("origin", "abc");
+
+		byte[] frame = messageEncoder.encode(Message.MessageType.PUBLISH, "test-address", headers, "hello", null);
+
+		assertThat(headers.serialized(messageEncoder.headersKey())).isNull();
+		assertThat(new String(frame, StandardCharsets.UTF_8)).isEqualTo("{\"type\":\"publish\",\"address\":\"test-address\"," +
+				"\"headers\":{\"token\":\"123\",\"origin\":\"abc\"},\"body\":\"hello\"}");
+	}
+
+	@Test
+	public void testEncodersOfOneObjectMapperShareKeptHeaders() throws Exception {
+		// like the connections of a pool, which take turns sending the same headers
+		MessageEncoder other = new MessageEncoder(objectMapper);
+		Headers headers = Headers.of("token", "123");
+
+		byte[] first = messageEncoder.encode(Message.MessageType.SEND, "test-address", headers, "hello", null);
+		byte[] second = other.encode(Message.MessageType.SEND, "test-address", headers, "hello", null);
+		Object serialized = headers.serialized(other.headersKey());
+		byte[] third = messageEncoder.encode(Message.MessageType.SEND, "test-address", headers, "hello", null);
+		byte[] fourth = other.encode(Message.MessageType.SEND, "test-address", headers, "hello", null);
+
+		assertThat(serialized).isNotNull();
+		assertThat(headers.serialized(messageEncoder.headersKey())).isSameAs(serialized);
+		assertThat(second).isEqualTo(first);
+		assertThat(third).isEqualTo(first);
+		assertThat(fourth).isEqualTo(first);
+	}
+
+	@Test
+	public void testEncodeObjectBody() throws Exception {
+		byte[] frame = messageEncoder.encode(Message.MessageType.PUBLISH, "test-address", null,
+				Collections.singletonMap("id", 1), null);
+
+		assertThat(new String(frame, StandardCharsets.UTF_8))
+				.isEqualTo("{\"type\":\"publish\",\"address\":\"test-address\",\"headers\":{},\"body\":{\"id\":1}}");
+	}
+
+	@Test
+	public void testEncodeMessageWithoutHeadersAndBody() throws Exception {
+		byte[] frame = messageEncoder.encode(Message.MessageType.REGISTER, "test-address", null, null, null);
+
+		assertThat(new String(frame, StandardCharsets.UTF_8))
+				.isEqualTo("{\"type\":\"register\",\"address\":\"test-address\",\"headers\":{}}");
+	}
+
+	@Test
+	public void testEncodeMatchesObjectMapper() throws Exception {
+		byte[] frame = messageEncoder.encode(Message.MessageType.PUBLISH, "test-address", null, "hello", null);
+		byte[] expected = objectMapper.writeValueAsBytes(new Message(Message.MessageType.PUBLISH, "test-address", null, "hello"));
+
+		assertThat(objectMapper.readTree(frame)).isEqualTo(objectMapper.readTree(expected));
+	}
+}
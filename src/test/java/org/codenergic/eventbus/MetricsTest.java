@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class MetricsTest {
+	private final DefaultEventBusMetrics metrics = new DefaultEventBusMetrics();
+	private EventBus eventBus;
+
+	@After
+	public void after() {
+		eventBus.close();
+		TestHelper.stopServer();
+	}
+
+	@Before
+	public void before() throws Exception {
+		eventBus = EventBus.newInstance(TestHelper.startServer(), new EventBusOptions().setMetrics(metrics)).openSync();
+		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
+		eb.consumer("test-address", event -> {
+			if ("hold".equals(event.body())) {
+				return;
+			}
+			event.reply(event.body());
+			eb.publish("test-address-publish-reply", event.body());
+		});
+	}
+
+	@Test
+	public void testCountersAndLatencies() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		eventBus.registerHandler("test-address-publish-reply", message -> latch.countDown());
+
+		eventBus.request("test-address", "testing").get(5, TimeUnit.SECONDS);
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		// frames are handled in order, so this reply also waits for the handler metrics of the publish
+		eventBus.request("test-address", "testing").get(5, TimeUnit.SECONDS);
+
+		assertThat(metrics.getFramesSent()).isGreaterThanOrEqualTo(2);
+		assertThat(metrics.getBytesSent()).isPositive();
+		assertThat(metrics.getFramesReceived()).isGreaterThanOrEqualTo(2);
+		assertThat(metrics.getRepliesReceived()).isEqualTo(2);
+		assertThat(metrics.getPendingReplies()).isZero();
+		assertThat(metrics.getReplyRoundTrip().getCount()).isEqualTo(2);
+		assertThat(metrics.getHandlerLatency().getCount()).isPositive();
+		assertThat(metrics.snapshot()).containsEntry("connections.opened", 1L);
+	}
+
+	@Test
+	public void testPendingRepliesAreBounded() throws Exception {
+		eventBus.close();
+		eventBus = EventBus.newInstance("ws://127.0.0.1:8080/eventbus/websocket", new EventBusOptions()
+				.setMetrics(metrics)
+				.setMaxPendingReplies(2)).openSync();
+
+		CompletableFuture<Message> held = eventBus.request("test-address", "hold");
+		eventBus.request("test-address", "hold");
+		assertThatThrownBy(() -> eventBus.request("test-address", "hold").get(5, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(IllegalStateException.class);
+		assertThat(eventBus.getPendingReplies()).isEqualTo(2);
+		assertThat(metrics.getRepliesRejected()).isEqualTo(1);
+
+		eventBus.close();
+		assertThat(held).isCompletedExceptionally();
+		assertThat(eventBus.getPendingReplies()).isZero();
+		assertThat(metrics.getPendingReplies()).isZero();
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 10_000; i++) {
+			histogram.record(i * 1000);
+		}
+
+		assertThat(histogram.getCount()).isEqualTo(10_000);
+		assertThat((double) histogram.getValueAtPercentile(50)).isCloseTo(5_000_000, within(5_000_000 * 0.04));
+		assertThat((double) histogram.getValueAtPercentile(99)).isCloseTo(9_900_000, within(9_900_000 * 0.04));
+		assertThat((double) histogram.getMax()).isCloseTo(10_000_000, within(10_000_000 * 0.04));
+	}
+}
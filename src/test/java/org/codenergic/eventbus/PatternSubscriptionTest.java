@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatternSubscriptionTest {
+	private final List<String> received = new CopyOnWriteArrayList<>();
+	// pattern registrations the bridge has seen, which the interceptor below forwards concrete addresses to
+	private final Map<String, SockJSSocket> patterns = new ConcurrentHashMap<>();
+	private final AddressTrie trie = new AddressTrie();
+	private EventBus eventBus;
+
+	@After
+	public void after() {
+		eventBus.close();
+		TestHelper.stopServer();
+	}
+
+	@Before
+	public void before() throws Exception {
+		eventBus = EventBus.newInstance(TestHelper.startServer(this::trackPatterns)).openSync();
+		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
+		eb.consumer("test-address", event -> event.reply(event.body()));
+		eb.<Object>addOutboundInterceptor(context -> {
+			String address = context.message().address();
+			if (!AddressTrie.isPattern(address)) {
+				// one frame per socket, however many of its patterns match
+				Set<SockJSSocket> sockets = new HashSet<>();
+				trie.match(address, pattern -> sockets.add(patterns.get(pattern)));
+				sockets.forEach(socket -> socket.write(Buffer.buffer(new JsonObject()
+						.put("type", "rec")
+						.put("address", address)
+						.put("body", context.message().body())
+						.encode())));
+			}
+			context.next();
+		});
+	}
+
+	private void trackPatterns(BridgeEvent event) {
+		String address = event.getRawMessage() == null ? null : event.getRawMessage().getString("address");
+		if (address != null && AddressTrie.isPattern(address)) {
+			if (event.type() == BridgeEventType.REGISTER) {
+				patterns.put(address, event.socket());
+				trie.add(address);
+			} else if (event.type() == BridgeEventType.UNREGISTER) {
+				trie.remove(address);
+				patterns.remove(address);
+			}
+		}
+		event.complete(true);
+	}
+
+	@Test
+	public void testPatternHandlersRunOncePerMessage() throws Exception {
+		Consumer<Message> handler = message -> received.add(message.getAddress() + "=" + message.getBody());
+		eventBus.registerHandler("test-pattern.*", handler);
+		eventBus.registerHandler("test-pattern.>", handler);
+		// the reply orders the publishes after the REGISTER frames
+		eventBus.request("test-address", "sync").get(5, TimeUnit.SECONDS);
+
+		TestHelper.vertx.eventBus().publish("test-pattern.created", "forwarded");
+		// delivered by the bridge for the REGISTER of the literal pattern
+		TestHelper.vertx.eventBus().publish("test-pattern.*", "literal");
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (received.size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		assertThat(received).containsExactlyInAnyOrder("test-pattern.created=forwarded", "test-pattern.*=literal");
+	}
+
+	@Test
+	public void testUnregisteredPatternStopsDelivery() throws Exception {
+		Consumer<Message> handler = message -> received.add(message.getBody());
+		eventBus.registerHandler("test-pattern.*", handler);
+		eventBus.request("test-address", "sync").get(5, TimeUnit.SECONDS);
+		TestHelper.vertx.eventBus().publish("test-pattern.created", "before");
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (received.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		eventBus.unregisterHandler("test-pattern.*", handler);
+		eventBus.request("test-address", "sync").get(5, TimeUnit.SECONDS);
+		TestHelper.vertx.eventBus().publish("test-pattern.created", "after");
+		eventBus.request("test-address", "sync").get(5, TimeUnit.SECONDS);
+
+		assertThat(received).containsExactly("before");
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PendingRepliesTest {
+	@Test
+	public void testCappedTableNeverGrows() {
+		PendingReplies replies = new PendingReplies(100_000);
+		int tableSize = replies.tableSize();
+
+		for (int i = 0; i < 100_000; i++) {
+			replies.put(new PendingReply(null, null));
+		}
+
+		assertThat(replies.size()).isEqualTo(100_000);
+		assertThat(replies.tableSize()).isEqualTo(tableSize);
+		assertThatThrownBy(() -> replies.put(new PendingReply(null, null))).isInstanceOf(IllegalStateException.class);
+	}
+}
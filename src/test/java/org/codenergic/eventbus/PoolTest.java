@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PoolTest {
+	private String connectionAddress;
+
+	@After
+	public void after() {
+		TestHelper.stopServer();
+	}
+
+	@Before
+	public void before() throws Exception {
+		connectionAddress = TestHelper.startServer();
+		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
+		eb.consumer("test-address", event -> {
+			event.reply(event.body());
+			eb.publish("test-address-publish-reply", event.body());
+		});
+	}
+
+	private void testRequestsAndPublishes(LoadBalancing loadBalancing) throws Exception {
+		CountDownLatch opened = new CountDownLatch(1);
+		EventBus eventBus = EventBus.newInstance(connectionAddress, new EventBusOptions()
+				.setConnections(4)
+				.setLoadBalancing(loadBalancing));
+		eventBus.onOpen(eb -> opened.countDown());
+		assertThat(eventBus.open().get(5, TimeUnit.SECONDS)).isEqualTo(eventBus);
+		assertThat(opened.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// the REGISTER may travel on another connection than the requests, so wait until the bridge has seen it
+		CompletableFuture<Message> registered = new CompletableFuture<>();
+		eventBus.registerHandler("test-address-publish-reply", registered::complete);
+		while (!registered.isDone()) {
+			eventBus.request("test-address", "probe").get(5, TimeUnit.SECONDS);
+		}
+
+		CountDownLatch published = new CountDownLatch(100);
+		eventBus.registerHandler("test-address-publish-reply", message -> {
+			if (!"probe".equals(message.getBody())) {
+				published.countDown();
+			}
+		});
+
+		List<CompletableFuture<Message>> replies = IntStream.range(0, 100)
+				.mapToObj(i -> eventBus.request("test-address", String.valueOf(i)))
+				.collect(Collectors.toList());
+		for (int i = 0; i < replies.size(); i++) {
+			assertThat(replies.get(i).get(5, TimeUnit.SECONDS).getBody()).isEqualTo(String.valueOf(i));
+		}
+		assertThat(published.await(5, TimeUnit.SECONDS)).isTrue();
+		eventBus.close();
+	}
+
+	@Test
+	public void testConnectionsOnlyReadTheirOwnFrames() throws Exception {
+		AtomicInteger framesReceived = new AtomicInteger();
+		EventBus eventBus = EventBus.newInstance(connectionAddress, new EventBusOptions()
+				.setConnections(2)
+				.setMetrics(new EventBusMetrics() {
+					@Override
+					public void frameReceived(int bytes) {
+						framesReceived.incrementAndGet();
+					}
+				}));
+		// spread over both connections, so each of them answers a registration barrier
+		for (String address : Arrays.asList("test-address-reply", "test-address-publish-reply", "test-address-local")) {
+			eventBus.registerHandler(address, message -> {
+			});
+		}
+
+		eventBus.open().get(5, TimeUnit.SECONDS);
+		assertThat(framesReceived.get()).isEqualTo(2);
+		eventBus.close();
+	}
+
+	@Test
+	public void testLeastPending() throws Exception {
+		testRequestsAndPublishes(LoadBalancing.LEAST_PENDING);
+	}
+
+	@Test
+	public void testRoundRobin() throws Exception {
+		testRequestsAndPublishes(LoadBalancing.ROUND_ROBIN);
+	}
+}
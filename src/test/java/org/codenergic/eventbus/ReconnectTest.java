@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReconnectTest {
+	private final Semaphore opened = new Semaphore(0);
+	private final Semaphore closed = new Semaphore(0);
+	private EventBus eventBus;
+
+	@After
+	public void after() {
+		eventBus.close();
+		TestHelper.stopServer();
+	}
+
+	@Before
+	public void before() throws Exception {
+		String address = startServer();
+		eventBus = EventBus.newInstance(address, new EventBusOptions()
+				.setReconnect(true)
+				.setReconnectInitialDelay(50)
+				.setReconnectMaxDelay(200)
+				.setReconnectBufferCapacity(16));
+		eventBus.onOpen(eb -> opened.release());
+		eventBus.onClose(eb -> closed.release());
+		eventBus.openSync();
+	}
+
+	private static String startServer() throws InterruptedException {
+		String address = TestHelper.startServer();
+		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
+		eb.consumer("test-address", event -> eb.publish("test-address-publish-reply", event.body()));
+		return address;
+	}
+
+	private void stopServer() throws InterruptedException {
+		TestHelper.stopServer();
+		assertThat(closed.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void testHandlersAreRegisteredAgainAfterReconnect() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		eventBus.registerHandler("test-address-publish-reply", message -> latch.countDown());
+
+		stopServer();
+		startServer();
+		assertThat(opened.tryAcquire(2, 5, TimeUnit.SECONDS)).isTrue();
+
+		eventBus.publish("test-address", "after-reconnect");
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void testMessagesAreBufferedWhileReconnecting() throws Exception {
+		CompletableFuture<String> received = new CompletableFuture<>();
+		eventBus.registerHandler("test-address-publish-reply", message -> received.complete(message.getBody()));
+
+		stopServer();
+		CompletableFuture<Void> written = eventBus.publishAsync("test-address", "buffered");
+		startServer();
+
+		written.get(5, TimeUnit.SECONDS);
+		assertThat(received.get(5, TimeUnit.SECONDS)).isEqualTo("buffered");
+	}
+}
@@ -20,8 +20,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -33,6 +35,7 @@ import org.junit.Test;
 import io.vertx.core.eventbus.DeliveryOptions;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class SendMessageTest {
 	private static EventBus eventBus;
@@ -48,6 +51,10 @@ public class SendMessageTest {
 		eventBus = EventBus.newInstance(TestHelper.startServer()).openSync();
 		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
 		eb.consumer("test-address", event -> {
+			if ("fail".equals(event.body())) {
+				event.fail(42, "failed on purpose");
+				return;
+			}
 			event.reply(event.address() + "-" + event.body(), new DeliveryOptions().setHeaders(event.headers()));
 			eb.send("test-address-reply", event.address() + "-" + event.body(), new DeliveryOptions().setHeaders(event.headers()));
 			eb.publish("test-address-publish-reply", event.address() + "-" + event.body(), new DeliveryOptions().setHeaders(event.headers()));
@@ -111,6 +118,31 @@ public class SendMessageTest {
 		});
 	}
 
+	@Test
+	public void testRequestReply() throws Exception {
+		String body = UUID.randomUUID().toString();
+
+		Message reply = eventBus.request("test-address", body).get(5, TimeUnit.SECONDS);
+
+		assertThat(reply.getBody()).isEqualTo("test-address-" + body);
+	}
+
+	@Test
+	public void testRequestFailure() throws Exception {
+		CompletableFuture<Message> reply = eventBus.request("test-address", "fail");
+
+		assertThatThrownBy(() -> reply.get(5, TimeUnit.SECONDS))
+				.hasCauseInstanceOf(ReplyException.class)
+				.satisfies(e -> assertThat(((ReplyException) e.getCause()).getFailureCode()).isEqualTo(42));
+	}
+
+	@Test
+	public void testRequestTimeout() throws Exception {
+		CompletableFuture<Message> reply = eventBus.request("test-address-without-reply", "testing", null, 200);
+
+		assertThatThrownBy(() -> reply.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+	}
+
 	@Test
 	public void testSendMessageWithReply() throws InterruptedException {
 		List<String> messageBodies = IntStream.rangeClosed(0, 20)
@@ -147,24 +179,23 @@ public class SendMessageTest {
 		List<Throwable> throwables = new ArrayList<>();
 
 		String body = UUID.randomUUID().toString();
-		eventBus.send("test-address", body, null, message -> {
+		eventBus.registerHandler("test-address-reply", message -> {
 			messages.add(message);
 			latch.countDown();
 			throw new IllegalStateException();
-		}, (message, throwable) -> {
-			latch.countDown();
+		}, ((message, throwable) -> {
 			throwables.add(throwable);
-		});
-
-		eventBus.registerHandler("test-address-reply", message -> {
+			latch.countDown();
+		}));
+		// registered before the only send, so exactly one message reaches the handler
+		eventBus.send("test-address", body, null, message -> {
 			messages.add(message);
 			latch.countDown();
 			throw new IllegalStateException();
-		}, ((message, throwable) -> {
-			latch.countDown();
+		}, (message, throwable) -> {
 			throwables.add(throwable);
-		}));
-		eventBus.send("test-address", body);
+			latch.countDown();
+		});
 
 		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
 
@@ -180,23 +211,48 @@ public class SendMessageTest {
 		final CountDownLatch latch = new CountDownLatch(2);
 		List<String> messages = new ArrayList<>();
 
+		String body = UUID.randomUUID().toString();
 		Consumer<Message> messageHandler = message -> {
-			messages.add(message.getBody());
-			latch.countDown();
+			// ignore late publishes from other tests
+			if (message.getBody().endsWith(body)) {
+				messages.add(message.getBody());
+				latch.countDown();
+			}
 		};
 		eventBus.registerHandler("test-address-publish-reply", messageHandler);
-		eventBus.publish("test-address", "testing");
+		eventBus.publish("test-address", body);
 
 		boolean sent = latch.await(2, TimeUnit.SECONDS);
 		assertThat(sent).isFalse();
 
 		eventBus.unregisterHandler("test-address-publish-reply", messageHandler);
-		eventBus.publish("test-address", "testing");
+		eventBus.publish("test-address", body);
 
 		sent = latch.await(2, TimeUnit.SECONDS);
 		assertThat(sent).isFalse();
 
 		assertThat(messages).hasSize(1);
-		assertThat(messages.iterator().next()).isEqualTo("test-address-testing");
+		assertThat(messages.iterator().next()).isEqualTo("test-address-" + body);
+	}
+
+	@Test
+	public void testUnsubscribeKeepsOtherHandlers() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+		String body = UUID.randomUUID().toString();
+		Consumer<Message> removedHandler = message -> messages.add("removed");
+		eventBus.registerHandler("test-address-reply", removedHandler);
+		eventBus.registerHandler("test-address-reply", message -> {
+			if (message.getBody().endsWith(body)) {
+				messages.add(message.getBody());
+				latch.countDown();
+			}
+		});
+		eventBus.unregisterHandler("test-address-reply", removedHandler);
+		eventBus.send("test-address", body);
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(messages).containsExactly("test-address-" + body);
 	}
 }
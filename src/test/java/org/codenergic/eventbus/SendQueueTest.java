@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SendQueueTest {
+	private final CountDownLatch taken = new CountDownLatch(1);
+	private final CountDownLatch released = new CountDownLatch(1);
+	private EventBus eventBus;
+	private OutboundQueue queue;
+
+	@After
+	public void after() {
+		released.countDown();
+		if (queue != null) {
+			queue.close(1000);
+		}
+		eventBus.close();
+		TestHelper.stopServer();
+	}
+
+	@Before
+	public void before() throws Exception {
+		eventBus = EventBus.newInstance(TestHelper.startServer(), new EventBusOptions()
+				.setSendQueueCapacity(128)
+				.setFlushBatchSize(16)
+				.setFlushIntervalMicros(500))
+				.openSync();
+		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
+		eb.consumer("test-address", event -> eb.publish("test-address-publish-reply", event.body()));
+	}
+
+	@Test
+	public void testPublishThroughSendQueue() throws Exception {
+		int count = 500;
+		CountDownLatch latch = new CountDownLatch(count);
+		eventBus.registerHandler("test-address-publish-reply", message -> latch.countDown());
+
+		List<CompletableFuture<Void>> futures = IntStream.range(0, count)
+				.mapToObj(i -> eventBus.sendAsync("test-address", String.valueOf(i)))
+				.collect(Collectors.toList());
+
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void testAsyncSendFailsAfterClose() {
+		eventBus.close();
+
+		assertThat(eventBus.publishAsync("test-address", "testing")).isCompletedExceptionally();
+	}
+
+	/**
+	 * A queue of two frames whose writer holds the first frame it takes until {@link #released} counts down, so the
+	 * two frames offered after it fill the queue.
+	 */
+	private OutboundQueue fullQueue(OverflowPolicy overflowPolicy, List<OutboundQueue.OutboundFrame> frames) throws Exception {
+		queue = new OutboundQueue(new EventBusOptions()
+				.setSendQueueCapacity(2)
+				.setSendQueueOverflowPolicy(overflowPolicy), frame -> {
+			taken.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			frame.written.complete(null);
+		}, () -> {
+		});
+		queue.offer(frames.get(0));
+		assertThat(taken.await(5, TimeUnit.SECONDS)).isTrue();
+		queue.offer(frames.get(1));
+		queue.offer(frames.get(2));
+		return queue;
+	}
+
+	private static List<OutboundQueue.OutboundFrame> frames(int count) {
+		return IntStream.range(0, count)
+				.mapToObj(i -> new OutboundQueue.OutboundFrame(WebSocketFrame.createBinaryFrame(new byte[]{(byte) i}), new CompletableFuture<>()))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testBlockWaitsForRoom() throws Exception {
+		List<OutboundQueue.OutboundFrame> frames = frames(4);
+		OutboundQueue queue = fullQueue(OverflowPolicy.BLOCK, frames);
+
+		CompletableFuture<Void> offered = CompletableFuture.runAsync(() -> queue.offer(frames.get(3)));
+		Thread.sleep(100);
+		assertThat(offered).isNotDone();
+
+		released.countDown();
+		offered.get(5, TimeUnit.SECONDS);
+		for (OutboundQueue.OutboundFrame frame : frames) {
+			frame.written.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void testDropOldestFailsTheOldestQueuedFrame() throws Exception {
+		List<OutboundQueue.OutboundFrame> frames = frames(4);
+		OutboundQueue queue = fullQueue(OverflowPolicy.DROP_OLDEST, frames);
+
+		queue.offer(frames.get(3));
+		released.countDown();
+
+		assertThatThrownBy(() -> frames.get(1).written.get(5, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(IllegalStateException.class);
+		frames.get(0).written.get(5, TimeUnit.SECONDS);
+		frames.get(2).written.get(5, TimeUnit.SECONDS);
+		frames.get(3).written.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testFailFastRejectsTheNewFrame() throws Exception {
+		List<OutboundQueue.OutboundFrame> frames = frames(4);
+		OutboundQueue queue = fullQueue(OverflowPolicy.FAIL_FAST, frames);
+
+		assertThatThrownBy(() -> queue.offer(frames.get(3))).isInstanceOf(IllegalStateException.class);
+		released.countDown();
+
+		frames.get(2).written.get(5, TimeUnit.SECONDS);
+		assertThat(frames.get(3).written).isNotDone();
+		assertThat(queue.size()).isZero();
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codenergic.eventbus;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SubscribeTest {
+	private final List<String> received = new CopyOnWriteArrayList<>();
+	private EventBus eventBus;
+
+	@After
+	public void after() {
+		eventBus.close();
+		TestHelper.stopServer();
+	}
+
+	@Before
+	public void before() throws Exception {
+		eventBus = EventBus.newInstance(TestHelper.startServer()).openSync();
+		io.vertx.core.eventbus.EventBus eb = TestHelper.vertx.eventBus();
+		eb.consumer("test-address", event -> {
+			received.add(String.valueOf(event.body()));
+			event.reply(event.body());
+		});
+	}
+
+	private void publishToSubscribers(int count) throws Exception {
+		// the reply orders the publishes after the REGISTER frame of the subscription
+		eventBus.request("test-address", "sync").get(5, TimeUnit.SECONDS);
+		for (int i = 0; i < count; i++) {
+			TestHelper.vertx.eventBus().publish("test-address-publish-reply", String.valueOf(i));
+		}
+	}
+
+	@Test
+	public void testSubscribeHonoursDemand() throws Exception {
+		List<String> messages = new CopyOnWriteArrayList<>();
+		CompletableFuture<Subscription> subscribed = new CompletableFuture<>();
+		CountDownLatch firstTwo = new CountDownLatch(2);
+		CountDownLatch all = new CountDownLatch(5);
+		eventBus.subscribe("test-address-publish-reply").subscribe(new Subscriber<Message>() {
+			@Override
+			public void onSubscribe(Subscription subscription) {
+				subscribed.complete(subscription);
+				subscription.request(2);
+			}
+
+			@Override
+			public void onNext(Message message) {
+				messages.add(message.getBody());
+				firstTwo.countDown();
+				all.countDown();
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+
+		publishToSubscribers(5);
+		assertThat(firstTwo.await(5, TimeUnit.SECONDS)).isTrue();
+		eventBus.request("test-address", "sync").get(5, TimeUnit.SECONDS);
+		assertThat(messages).containsExactly("0", "1");
+
+		subscribed.get().request(3);
+		assertThat(all.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(messages).containsExactly("0", "1", "2", "3", "4");
+		subscribed.get().cancel();
+	}
+
+	@Test
+	public void testSubscriberFailsWhenBufferOverflows() throws Exception {
+		CompletableFuture<Throwable> failure = new CompletableFuture<>();
+		eventBus.subscribe("test-address-publish-reply", 2, OverflowPolicy.FAIL_FAST).subscribe(new Subscriber<Message>() {
+			@Override
+			public void onSubscribe(Subscription subscription) {
+			}
+
+			@Override
+			public void onNext(Message message) {
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				failure.complete(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+
+		publishToSubscribers(3);
+		assertThat(failure.get(5, TimeUnit.SECONDS)).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void testSendSubscriber() throws Exception {
+		int count = 200;
+		AtomicInteger outstanding = new AtomicInteger();
+		AtomicInteger maxOutstanding = new AtomicInteger();
+		Publisher<Object> source = subscriber -> subscriber.onSubscribe(new Subscription() {
+			private int next;
+
+			@Override
+			public void request(long n) {
+				maxOutstanding.accumulateAndGet(outstanding.addAndGet((int) n), Math::max);
+				for (long i = 0; i < n && next < count; i++) {
+					outstanding.decrementAndGet();
+					subscriber.onNext(String.valueOf(next++));
+				}
+				if (next == count) {
+					subscriber.onComplete();
+				}
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+
+		MessageSink sink = eventBus.sendSubscriber("test-address", 8);
+		source.subscribe(sink);
+		sink.completion().get(5, TimeUnit.SECONDS);
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (received.size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(received).hasSize(count);
+		assertThat(received.get(count - 1)).isEqualTo(String.valueOf(count - 1));
+		assertThat(maxOutstanding.get()).isLessThanOrEqualTo(8);
+	}
+
+	@Test
+	public void testSendSubscriberRequestsSerially() throws Exception {
+		int count = 100;
+		AtomicInteger requesting = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		AtomicInteger emitted = new AtomicInteger();
+		MessageSink sink = eventBus.sendSubscriber("test-address", 4);
+		sink.onSubscribe(new Subscription() {
+			@Override
+			public void request(long n) {
+				if (requesting.incrementAndGet() > 1) {
+					overlaps.incrementAndGet();
+				}
+				try {
+					for (long i = 0; i < n && emitted.get() < count; i++) {
+						sink.onNext(String.valueOf(emitted.getAndIncrement()));
+					}
+					// keeps this request in flight while the writer thread completes the writes above
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					requesting.decrementAndGet();
+				}
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (emitted.get() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		sink.onComplete();
+		sink.completion().get(5, TimeUnit.SECONDS);
+		assertThat(emitted).hasValue(count);
+		assertThat(overlaps).hasValue(0);
+	}
+
+	@Test
+	public void testSendSubscriberSignalsUpstreamError() throws Exception {
+		MessageSink sink = eventBus.sendSubscriber("test-address");
+		sink.onSubscribe(new Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		sink.onNext("testing");
+		sink.onError(new IllegalStateException("upstream failed"));
+
+		assertThatThrownBy(() -> sink.completion().get(5, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.hasMessageContaining("upstream failed");
+	}
+}
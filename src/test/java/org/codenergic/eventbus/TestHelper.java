@@ -1,11 +1,17 @@
 package org.codenergic.eventbus;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpServer;
 import io.vertx.ext.bridge.PermittedOptions;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
 import io.vertx.ext.web.handler.sockjs.BridgeOptions;
 import io.vertx.ext.web.handler.sockjs.SockJSHandler;
 
@@ -13,30 +19,56 @@ class TestHelper {
 	static Vertx vertx;
 
 	static String startServer() throws InterruptedException {
+		return startServer(event -> event.complete(true));
+	}
+
+	static String startServer(Handler<BridgeEvent> bridgeEventHandler) throws InterruptedException {
+		return startServer(bridgeOptions(), bridgeEventHandler);
+	}
+
+	static String startServer(BridgeOptions bridgeOptions, Handler<BridgeEvent> bridgeEventHandler) throws InterruptedException {
 		final String host = "127.0.0.1";
 		final int port = 8080;
 		final String connectionAddress = "ws://" + host + ":" + port + "/eventbus/websocket";
 		vertx = Vertx.vertx();
 		HttpServer server = vertx.createHttpServer();
 		Router router = Router.router(vertx);
-		router.route("/eventbus/*").handler(SockJSHandler.create(vertx)
-				.bridge(new BridgeOptions()
-						.addInboundPermitted(new PermittedOptions().setAddress("test-address"))
-						.addOutboundPermitted(new PermittedOptions().setAddress("test-address-reply"))
-						.addOutboundPermitted(new PermittedOptions().setAddress("test-address-publish-reply"))));
-		CountDownLatch latch = new CountDownLatch(1);
+		router.route("/eventbus/*").handler(SockJSHandler.create(vertx).bridge(bridgeOptions, bridgeEventHandler));
+		CompletableFuture<HttpServer> listening = new CompletableFuture<>();
 		server.requestHandler(router).listen(port, host, event -> {
 			if (event.failed()) {
-				throw new IllegalStateException(event.cause());
+				listening.completeExceptionally(event.cause());
+			} else {
+				listening.complete(event.result());
 			}
-			latch.countDown();
 		});
-		latch.await();
+		try {
+			listening.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException | TimeoutException e) {
+			throw new IllegalStateException(e);
+		}
 		return connectionAddress;
 	}
 
+	static BridgeOptions bridgeOptions() {
+		return new BridgeOptions()
+				.addInboundPermitted(new PermittedOptions().setAddress("test-address"))
+				.addInboundPermitted(new PermittedOptions().setAddress("test-address-local"))
+				.addOutboundPermitted(new PermittedOptions().setAddress("test-address-local"))
+				.addOutboundPermitted(new PermittedOptions().setAddress("test-address-reply"))
+				.addOutboundPermitted(new PermittedOptions().setAddress("test-address-publish-reply"))
+				.addOutboundPermitted(new PermittedOptions().setAddressRegex("test-pattern\\..+"));
+	}
+
 	static void stopServer() {
-		if (vertx != null)
-			vertx.close();
+		if (vertx != null) {
+			CountDownLatch latch = new CountDownLatch(1);
+			vertx.close(event -> latch.countDown());
+			try {
+				latch.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 }